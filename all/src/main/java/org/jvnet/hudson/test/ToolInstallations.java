@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import hudson.plugins.gradle.GradleInstallation;
+import hudson.tasks.Ant;
+import hudson.tasks.Maven;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Utility to install standard tools in the Jenkins under test.
+ * Tests needing a single tool may rather use {@link MavenInstallations}, {@link AntInstallations}
+ * or {@link GradleInstallations}, which do not load the classes of the other tools.
+ */
+public class ToolInstallations {
+
+    /**
+     * Returns the older default Maven, while still allowing specification of
+     * other bundled Mavens.
+     */
+    public static Maven.MavenInstallation configureDefaultMaven() throws Exception {
+        return MavenInstallations.configureDefaultMaven();
+    }
+
+    public static Maven.MavenInstallation configureMaven3() throws Exception {
+        return MavenInstallations.configureMaven3();
+    }
+
+    /**
+     * Declare "Maven 3.5.0" as the "default" Maven installation in Jenkins and as the Maven installation named "apache-maven-3.5.0".
+     * Note that both {@link hudson.tasks.Maven.MavenInstallation} share the same Maven binaries.
+     *
+     * @return the "apache-maven-3.5.0" Maven {@link hudson.tasks.Maven.MavenInstallation}
+     * @throws Exception
+     */
+    public static Maven.MavenInstallation configureMaven35() throws Exception {
+        return MavenInstallations.configureMaven35();
+    }
+
+    /**
+     * Starts provisioning several tools at once, to be registered with {@link ToolProvisioning#configure}.
+     */
+    public static ToolProvisioning provision() {
+        return new ToolProvisioning();
+    }
+
+
+    /**
+     * Locates Maven and configure that as the only Maven in the system.
+     *
+     * @see MavenInstallations#configureDefaultMaven(String, int)
+     */
+    public static Maven.MavenInstallation configureDefaultMaven(String mavenVersion, int mavenReqVersion) throws Exception {
+        return MavenInstallations.configureDefaultMaven(mavenVersion, mavenReqVersion);
+    }
+
+    /**
+     * Locates Maven and configure that as the only Maven in the system.
+     *
+     * @see MavenInstallations#configureDefaultMaven(String, int, TemporaryFolder, ToolHomeMode)
+     */
+    public static Maven.MavenInstallation configureDefaultMaven(String mavenVersion, int mavenReqVersion, TemporaryFolder tmp, ToolHomeMode mode) throws Exception {
+        return MavenInstallations.configureDefaultMaven(mavenVersion, mavenReqVersion, tmp, mode);
+    }
+
+    /**
+     * Extracts Ant and configures it.
+     */
+    public static Ant.AntInstallation configureDefaultAnt(TemporaryFolder tmp) throws Exception {
+        return AntInstallations.configureDefaultAnt(tmp);
+    }
+
+    /**
+     * Extracts Ant and configures it.
+     *
+     * @see AntInstallations#configureDefaultAnt(TemporaryFolder, ToolHomeMode)
+     */
+    public static Ant.AntInstallation configureDefaultAnt(TemporaryFolder tmp, ToolHomeMode mode) throws Exception {
+        return AntInstallations.configureDefaultAnt(tmp, mode);
+    }
+
+    /**
+     * Extracts Gradle and configures it.
+     */
+    public static GradleInstallation configureDefaultGradle(TemporaryFolder tmp) throws Exception {
+        return GradleInstallations.configureDefaultGradle(tmp);
+    }
+
+    /**
+     * Extracts Gradle and configures it.
+     *
+     * @see GradleInstallations#configureDefaultGradle(TemporaryFolder, ToolHomeMode)
+     */
+    public static GradleInstallation configureDefaultGradle(TemporaryFolder tmp, ToolHomeMode mode) throws Exception {
+        return GradleInstallations.configureDefaultGradle(tmp, mode);
+    }
+
+    private ToolInstallations() {
+    }
+
+}
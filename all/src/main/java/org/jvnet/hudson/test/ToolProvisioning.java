@@ -0,0 +1,242 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import hudson.plugins.gradle.Gradle;
+import hudson.plugins.gradle.GradleInstallation;
+import hudson.tasks.Ant;
+import hudson.tasks.Maven;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import jenkins.model.Jenkins;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Provisions several tools concurrently and registers them with a single save of each descriptor.
+ * Each tool starts being provisioned in the background as soon as it is declared.
+ * <pre>
+ * ToolProvisioning tools = ToolInstallations.provision()
+ *         .maven("apache-maven-3.5.0", Maven.MavenInstallation.MAVEN_30)
+ *         .ant(tmp)
+ *         .gradle(tmp)
+ *         .configure();
+ * </pre>
+ *
+ * @see ToolInstallations#provision()
+ */
+public final class ToolProvisioning {
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "ToolInstallations provisioning");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private final Map<String, String> mavenVersions = new LinkedHashMap<String, String>();
+    private final Map<String, Future<File>> mavenHomes = new LinkedHashMap<String, Future<File>>();
+    private Future<File> antHome;
+    private Future<File> gradleHome;
+
+    private final Map<String, Maven.MavenInstallation> mavens = new LinkedHashMap<String, Maven.MavenInstallation>();
+    private Ant.AntInstallation ant;
+    private GradleInstallation gradle;
+
+    ToolProvisioning() {
+    }
+
+    /**
+     * Starts provisioning a Maven installation named {@code default}.
+     *
+     * @see ToolInstallations#configureDefaultMaven(String, int)
+     */
+    public ToolProvisioning maven(String mavenVersion, int mavenReqVersion) {
+        return maven("default", mavenVersion, mavenReqVersion);
+    }
+
+    /**
+     * Starts provisioning a Maven installation.
+     * Several may be declared under different names; they are all registered together.
+     *
+     * @see ToolInstallations#configureDefaultMaven(String, int)
+     */
+    public ToolProvisioning maven(String name, String mavenVersion, int mavenReqVersion) {
+        return maven(name, mavenVersion, mavenReqVersion, null, ToolHomeMode.getDefault());
+    }
+
+    /**
+     * Starts provisioning a Maven installation.
+     * Several may be declared under different names; they are all registered together.
+     *
+     * @see ToolInstallations#configureDefaultMaven(String, int, TemporaryFolder, ToolHomeMode)
+     */
+    public ToolProvisioning maven(String name, final String mavenVersion, final int mavenReqVersion, final TemporaryFolder tmp, final ToolHomeMode mode) {
+        mavenVersions.put(name, mavenVersion);
+        mavenHomes.put(name, EXECUTOR.submit(new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+                return MavenInstallations.home(mavenVersion, mavenReqVersion, tmp, mode);
+            }
+        }));
+        return this;
+    }
+
+    /**
+     * Starts provisioning an Ant installation named {@code default}.
+     *
+     * @see ToolInstallations#configureDefaultAnt(TemporaryFolder)
+     */
+    public ToolProvisioning ant(TemporaryFolder tmp) {
+        return ant(tmp, ToolHomeMode.getDefault());
+    }
+
+    /**
+     * Starts provisioning an Ant installation named {@code default}.
+     *
+     * @see ToolInstallations#configureDefaultAnt(TemporaryFolder, ToolHomeMode)
+     */
+    public ToolProvisioning ant(final TemporaryFolder tmp, final ToolHomeMode mode) {
+        antHome = EXECUTOR.submit(new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+                return AntInstallations.home(tmp, mode);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Starts provisioning a Gradle installation named {@code default}.
+     *
+     * @see ToolInstallations#configureDefaultGradle(TemporaryFolder)
+     */
+    public ToolProvisioning gradle(TemporaryFolder tmp) {
+        return gradle(tmp, ToolHomeMode.getDefault());
+    }
+
+    /**
+     * Starts provisioning a Gradle installation named {@code default}.
+     *
+     * @see ToolInstallations#configureDefaultGradle(TemporaryFolder, ToolHomeMode)
+     */
+    public ToolProvisioning gradle(final TemporaryFolder tmp, final ToolHomeMode mode) {
+        gradleHome = EXECUTOR.submit(new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+                return GradleInstallations.home(tmp, mode);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Waits for all declared tools and registers them in the Jenkins under test, saving each descriptor once.
+     */
+    @SuppressWarnings("try")
+    public ToolProvisioning configure() throws Exception {
+        List<Maven.MavenInstallation> mavenInstallations = new ArrayList<Maven.MavenInstallation>();
+        for (Map.Entry<String, Future<File>> e : mavenHomes.entrySet()) {
+            Maven.MavenInstallation mavenInstallation = MavenInstallations.installation(e.getKey(), mavenVersions.get(e.getKey()), get(e.getValue()));
+            mavens.put(e.getKey(), mavenInstallation);
+            mavenInstallations.add(mavenInstallation);
+        }
+        if (antHome != null) {
+            ant = AntInstallations.installation(get(antHome));
+        }
+        if (gradleHome != null) {
+            gradle = GradleInstallations.installation(get(gradleHome));
+        }
+
+        Jenkins jenkins = Jenkins.getInstance();
+        if (!mavenInstallations.isEmpty()) {
+            try (ProvisioningEvent event = ProvisioningEvent.begin("register", "apache-maven")) {
+                jenkins.getDescriptorByType(Maven.DescriptorImpl.class).setInstallations(
+                        mavenInstallations.toArray(new Maven.MavenInstallation[mavenInstallations.size()]));
+            }
+        }
+        if (ant != null) {
+            try (ProvisioningEvent event = ProvisioningEvent.begin("register", "apache-ant-1.8.1")) {
+                jenkins.getDescriptorByType(Ant.DescriptorImpl.class).setInstallations(ant);
+            }
+        }
+        if (gradle != null) {
+            try (ProvisioningEvent event = ProvisioningEvent.begin("register", "gradle-2.13")) {
+                jenkins.getDescriptorByType(Gradle.DescriptorImpl.class).setInstallations(gradle);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return the registered Maven installation named {@code default}, or null
+     */
+    public Maven.MavenInstallation getMaven() {
+        return getMaven("default");
+    }
+
+    /**
+     * @return the registered Maven installation of that name, or null
+     */
+    public Maven.MavenInstallation getMaven(String name) {
+        return mavens.get(name);
+    }
+
+    /**
+     * @return the registered Ant installation, or null
+     */
+    public Ant.AntInstallation getAnt() {
+        return ant;
+    }
+
+    /**
+     * @return the registered Gradle installation, or null
+     */
+    public GradleInstallation getGradle() {
+        return gradle;
+    }
+
+    private static File get(Future<File> home) throws Exception {
+        try {
+            return home.get();
+        } catch (ExecutionException x) {
+            Throwable cause = x.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw x;
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import hudson.plugins.gradle.GradleInstallation;
+import hudson.tasks.Ant;
+import hudson.tasks.Maven;
+import java.io.File;
+import java.io.IOException;
+import jenkins.model.Jenkins;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+/**
+ * Declares the tools a test needs, so that they are provisioned in the background while {@link JenkinsRule} starts Jenkins,
+ * rather than afterwards by {@link ToolInstallations}.
+ * Provisioning starts as soon as a tool is declared, typically when the test instance is created;
+ * the installations are registered as {@code default} once Jenkins is up.
+ * The rule must run inside {@link JenkinsRule}, for example with a {@link org.junit.rules.RuleChain}:
+ * <pre>
+ * public JenkinsRule j = new JenkinsRule();
+ * public ToolsRule tools = new ToolsRule().maven("apache-maven-3.5.0", Maven.MavenInstallation.MAVEN_30).ant();
+ * {@literal @}Rule public RuleChain chain = RuleChain.outerRule(j).around(tools);
+ * </pre>
+ */
+public class ToolsRule implements TestRule {
+
+    private final LazyTemporaryFolder tmp = new LazyTemporaryFolder();
+    private final ToolProvisioning provisioning = ToolInstallations.provision();
+
+    /**
+     * Starts provisioning a Maven installation.
+     *
+     * @see ToolInstallations#configureDefaultMaven(String, int)
+     */
+    public ToolsRule maven(String mavenVersion, int mavenReqVersion) {
+        provisioning.maven(mavenVersion, mavenReqVersion);
+        return this;
+    }
+
+    /**
+     * Starts provisioning the bundled Ant installation, in a temporary folder owned by this rule.
+     *
+     * @see ToolInstallations#configureDefaultAnt(TemporaryFolder)
+     */
+    public ToolsRule ant() {
+        provisioning.ant(tmp);
+        return this;
+    }
+
+    /**
+     * Starts provisioning the bundled Gradle installation, in a temporary folder owned by this rule.
+     *
+     * @see ToolInstallations#configureDefaultGradle(TemporaryFolder)
+     */
+    public ToolsRule gradle() {
+        provisioning.gradle(tmp);
+        return this;
+    }
+
+    /**
+     * @return the registered Maven installation, or null if none was declared
+     */
+    public Maven.MavenInstallation getMaven() {
+        return provisioning.getMaven();
+    }
+
+    /**
+     * @return the registered Ant installation, or null if none was declared
+     */
+    public Ant.AntInstallation getAnt() {
+        return provisioning.getAnt();
+    }
+
+    /**
+     * @return the registered Gradle installation, or null if none was declared
+     */
+    public GradleInstallation getGradle() {
+        return provisioning.getGradle();
+    }
+
+    @Override
+    public Statement apply(final Statement base, Description description) {
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                try {
+                    if (Jenkins.getInstance() == null) {
+                        throw new IllegalStateException("ToolsRule must run inside JenkinsRule, e.g. RuleChain.outerRule(j).around(tools)");
+                    }
+                    provisioning.configure();
+                    base.evaluate();
+                } finally {
+                    tmp.delete();
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates its root on first use, as provisioning starts before the rule is applied.
+     */
+    private static final class LazyTemporaryFolder extends TemporaryFolder {
+        private boolean created;
+
+        @Override
+        public synchronized File newFolder(String folder) throws IOException {
+            return newFolder(new String[] {folder});
+        }
+
+        @Override
+        public synchronized File newFolder(String... folderNames) throws IOException {
+            if (!created) {
+                create();
+                created = true;
+            }
+            return super.newFolder(folderNames);
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import hudson.tasks.Ant;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Installs Ant in the Jenkins under test.
+ * Unlike {@code ToolInstallations}, it only links against Ant classes.
+ */
+public class AntInstallations {
+
+    private static final Logger LOGGER = Logger.getLogger(AntInstallations.class.getName());
+
+    /**
+     * Extracts Ant and configures it.
+     */
+    public static Ant.AntInstallation configureDefaultAnt(TemporaryFolder tmp) throws Exception {
+        return configureDefaultAnt(tmp, ToolHomeMode.getDefault());
+    }
+
+    /**
+     * Extracts Ant and configures it.
+     *
+     * @param mode whether the bundled Ant is materialized in {@code tmp} or shared with other tests
+     */
+    @SuppressWarnings("try")
+    public static Ant.AntInstallation configureDefaultAnt(TemporaryFolder tmp, ToolHomeMode mode) throws Exception {
+        Ant.AntInstallation antInstallation = installation(home(tmp, mode));
+        try (ProvisioningEvent event = ProvisioningEvent.begin("register", "apache-ant-1.8.1")) {
+            Jenkins.getInstance().getDescriptorByType(Ant.DescriptorImpl.class).setInstallations(antInstallation);
+        }
+        return antInstallation;
+    }
+
+    /**
+     * Locates Ant without touching Jenkins, materializing the bundled one if needed.
+     *
+     * @return the Ant home, or null if the bundled one is to be installed {@linkplain ToolHomeMode#LAZY lazily}
+     * @see #configureDefaultAnt(TemporaryFolder, ToolHomeMode)
+     */
+    static File home(TemporaryFolder tmp, ToolHomeMode mode) throws Exception {
+        String home = System.getenv("ANT_HOME");
+        if (home != null) {
+            if (ToolFingerprint.antVersion(new File(home)) != null) {
+                return new File(home);
+            }
+            LOGGER.log(Level.WARNING, "ANT_HOME={0} does not look like an Ant installation, ignoring it", home);
+        }
+        LOGGER.fine("Using Ant bundled in the test harness. "
+                + "To avoid a performance hit, set the environment variable ANT_HOME to point to an  Ant installation.");
+        File master = ToolHomes.prebuilt("apache-ant-1.8.1");
+        if (master == null) {
+            if (mode == ToolHomeMode.LAZY) {
+                return null;
+            }
+            master = ToolHomes.cached("apache-ant-1.8.1", "bin/ant");
+        }
+        return ToolHomes.layOut(master, tmp, "antHome", mode);
+    }
+
+    static Ant.AntInstallation installation(File home) throws IOException {
+        return new Ant.AntInstallation("default", BundledToolInstaller.path(home), BundledToolInstaller.properties(home, "apache-ant-1.8.1", "bin/ant"));
+    }
+
+    private AntInstallations() {
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Hands each invocation a fresh {@link TemporaryFolder}, as a test would have.
+ * Fixtures at {@link Level#Invocation} would distort benchmarks taking microseconds,
+ * so folders are created under one root per iteration, only once a benchmark asks for a directory in them.
+ */
+@State(Scope.Thread)
+public class BenchmarkFolder {
+
+    private File root;
+
+    @Setup(Level.Iteration)
+    public void create() throws IOException {
+        root = Files.createTempDirectory("benchmark").toFile();
+    }
+
+    /**
+     * A folder of its own for the calling invocation.
+     */
+    TemporaryFolder next() {
+        return new TemporaryFolder(root) {
+            private boolean created;
+            @Override
+            public File getRoot() {
+                if (!created) {
+                    created = true;
+                    try {
+                        create();
+                    } catch (IOException x) {
+                        throw new IllegalStateException(x);
+                    }
+                }
+                return super.getRoot();
+            }
+        };
+    }
+
+    @TearDown(Level.Iteration)
+    public void delete() throws IOException {
+        // unlike TemporaryFolder.delete, does not follow the links of overlay homes into the cache
+        ToolCache.delete(root);
+    }
+
+}
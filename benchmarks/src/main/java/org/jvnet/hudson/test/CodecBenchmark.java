@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.utils.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+/**
+ * Extraction of a bundled tool repackaged in each supported format, to choose how the build should bundle tools.
+ * Formats are the zip archive as bundled, the same zip with stored entries, and tar archives in every {@link ArchiveCodec}.
+ * Run with one writer thread, the time is mostly decompression; with the default parallelism, file creation overlaps it.
+ * The size of each repackaged archive is logged by the fork when it sets up the trial.
+ * Deduplication is disabled, as it would hash every file whatever the format.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {ProvisioningBenchmarks.CACHE_DIR, "-Dorg.jvnet.hudson.test.ToolInstallations.deduplicate=false"})
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(CodecBenchmark.class.getName());
+
+    @Param({"apache-maven-3.5.0", "apache-ant-1.8.1", "gradle-2.13"})
+    public String tool;
+
+    @Param({"zip", "zip-stored", ".tar", ".tar.gz", ".tar.lz4", ".tar.zst", ".tar.xz"})
+    public String format;
+
+    /** Threads writing files, 0 standing for the default. */
+    @Param({"1", "0"})
+    public int parallelism;
+
+    private int threads;
+    private ToolManifest manifest;
+    private URL archive;
+    private ArchiveCodec codec;
+
+    @Setup(Level.Trial)
+    public void repackage() throws IOException {
+        URL bundled = JenkinsRule.class.getClassLoader().getResource(tool + "-bin.zip");
+        if (bundled == null) {
+            throw new IOException(tool + "-bin.zip is not bundled");
+        }
+        threads = parallelism == 0 ? ZipExtractor.PARALLELISM : parallelism;
+        manifest = ToolManifest.forTool(tool);
+        if (format.equals("zip")) {
+            archive = bundled;
+            return;
+        }
+        File dir = new File("target/benchmark-codecs");
+        dir.mkdirs();
+        File f = new File(dir, tool + "-bin" + (format.equals("zip-stored") ? "-stored.zip" : format));
+        if (!f.isFile()) {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(f))) {
+                repackage(ZipArchive.open(bundled), out);
+            }
+        }
+        LOGGER.info(f.getName() + ": " + f.length() + " bytes");
+        archive = f.toURI().toURL();
+        if (!format.equals("zip-stored")) {
+            codec = ArchiveCodecs.forSuffix(format);
+            if (codec == null) {
+                throw new IOException("No codec for " + format);
+            }
+        }
+    }
+
+    private void repackage(ZipArchive zip, OutputStream out) throws IOException {
+        ArchiveOutputStream archiveOut;
+        if (format.equals("zip-stored")) {
+            ZipArchiveOutputStream zipOut = new ZipArchiveOutputStream(out);
+            zipOut.setMethod(ZipEntry.STORED);
+            archiveOut = zipOut;
+        } else {
+            TarArchiveOutputStream tarOut = new TarArchiveOutputStream(compress(out));
+            tarOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tarOut.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+            archiveOut = tarOut;
+        }
+        try (ArchiveOutputStream o = archiveOut) {
+            List<ZipArchive.Entry> entries = zip.entries();
+            for (ZipArchive.Entry e : entries) {
+                int mode = e.mode != 0 ? e.mode : e.isDirectory() ? 0755 : 0644;
+                ArchiveEntry entry;
+                if (o instanceof ZipArchiveOutputStream) {
+                    ZipArchiveEntry z = new ZipArchiveEntry(e.name);
+                    z.setUnixMode((e.isDirectory() ? 040000 : 0100000) | mode);
+                    z.setSize(e.size);
+                    z.setCrc(e.crc);
+                    z.setTime(e.time);
+                    entry = z;
+                } else {
+                    TarArchiveEntry t = new TarArchiveEntry(e.name);
+                    t.setMode((e.isDirectory() ? 040000 : 0100000) | mode);
+                    t.setSize(e.isDirectory() ? 0 : e.size);
+                    t.setModTime(e.time);
+                    entry = t;
+                }
+                o.putArchiveEntry(entry);
+                if (!e.isDirectory()) {
+                    try (InputStream in = zip.open(e)) {
+                        IOUtils.copy(in, o);
+                    }
+                }
+                o.closeArchiveEntry();
+            }
+        }
+    }
+
+    private OutputStream compress(OutputStream out) throws IOException {
+        switch (format) {
+        case ".tar":
+            return out;
+        case ".tar.gz":
+            return new GZIPOutputStream(out, 65536);
+        case ".tar.lz4":
+            return new LZ4FrameOutputStream(out);
+        case ".tar.zst":
+            return new ZstdOutputStream(out, 19);
+        case ".tar.xz":
+            return new XZOutputStream(out, new LZMA2Options());
+        default:
+            throw new IOException("Unknown format " + format);
+        }
+    }
+
+    @Benchmark
+    public List<ZipArchive.Entry> extract(BenchmarkFolder folder) throws Exception {
+        File target = folder.next().newFolder();
+        return codec != null ? TarExtractor.extract(archive, codec, target, manifest, threads)
+                : ZipExtractor.extract(archive, target, manifest, threads);
+    }
+
+}
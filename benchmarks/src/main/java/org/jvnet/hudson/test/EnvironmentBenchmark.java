@@ -0,0 +1,74 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolving Ant and Gradle from {@code ANT_HOME} and {@code GRADLE_HOME}.
+ * Forks inherit the environment of the runner, which must therefore set both:
+ * <pre>
+ * ANT_HOME=/opt/ant GRADLE_HOME=/opt/gradle java -jar target/benchmarks.jar Environment
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {ProvisioningBenchmarks.CACHE_DIR, ProvisioningBenchmarks.BUILD_DIR})
+@State(Scope.Thread)
+public class EnvironmentBenchmark {
+
+    @Setup(Level.Trial)
+    public void checkEnvironment() {
+        for (String var : new String[] {"ANT_HOME", "GRADLE_HOME"}) {
+            if (System.getenv(var) == null) {
+                throw new IllegalStateException(var + " must be set to run " + EnvironmentBenchmark.class.getSimpleName());
+            }
+        }
+    }
+
+    @Benchmark
+    public File ant() throws Exception {
+        return AntInstallations.home(null, ToolHomeMode.SHARED);
+    }
+
+    @Benchmark
+    public File gradle() throws Exception {
+        return GradleInstallations.home(null, ToolHomeMode.SHARED);
+    }
+
+}
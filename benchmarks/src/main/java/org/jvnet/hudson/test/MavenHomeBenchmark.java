@@ -0,0 +1,73 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import hudson.tasks.Maven;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolving Maven when {@code maven.home} is set, as when tests run from Maven.
+ * It points to the cached Maven 3.5.0, which satisfies {@code MAVEN_30}, so {@code maven35} only measures the version check.
+ * It does not satisfy {@code MAVEN_20}, which stands for Maven 2.x, so {@code maven22} measures the check
+ * then the lookup of the bundled Maven 2.2.1, extracted beforehand.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {ProvisioningBenchmarks.CACHE_DIR, ProvisioningBenchmarks.BUILD_DIR})
+@State(Scope.Thread)
+public class MavenHomeBenchmark {
+
+    @Setup(Level.Trial)
+    public void setMavenHome() throws Exception {
+        System.clearProperty("maven.home");
+        MavenInstallations.home("apache-maven-2.2.1", Maven.MavenInstallation.MAVEN_20, null, ToolHomeMode.SHARED);
+        File home = MavenInstallations.home("apache-maven-3.5.0", Maven.MavenInstallation.MAVEN_30, null, ToolHomeMode.SHARED);
+        System.setProperty("maven.home", home.getAbsolutePath());
+    }
+
+    @Benchmark
+    public File maven35() throws Exception {
+        return MavenInstallations.home("apache-maven-3.5.0", Maven.MavenInstallation.MAVEN_30, null, ToolHomeMode.SHARED);
+    }
+
+    @Benchmark
+    public File maven22() throws Exception {
+        return MavenInstallations.home("apache-maven-2.2.1", Maven.MavenInstallation.MAVEN_20, null, ToolHomeMode.SHARED);
+    }
+
+}
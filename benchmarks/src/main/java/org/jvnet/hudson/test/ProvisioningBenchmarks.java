@@ -0,0 +1,54 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the provisioning benchmarks, reporting time and allocation per operation.
+ * Takes the usual JMH options, for example a regular expression selecting benchmarks:
+ * <pre>
+ * java -jar target/benchmarks.jar ColdCache
+ * </pre>
+ * Benchmarks call the home resolvers of {@link MavenInstallations}, {@link AntInstallations} and {@link GradleInstallations} directly,
+ * so that no Jenkins is started and no descriptor is registered: only extraction and resolution are measured.
+ * Forked JVMs use {@code target/benchmark-cache} as {@link ToolCache}, never the machine-wide one.
+ */
+public final class ProvisioningBenchmarks {
+
+    /** JVM arguments of every fork. */
+    static final String CACHE_DIR = "-Dorg.jvnet.hudson.test.ToolInstallations.cacheDir=target/benchmark-cache";
+    static final String BUILD_DIR = "-DbuildDirectory=target/benchmark-build";
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build()).run();
+    }
+
+    private ProvisioningBenchmarks() {
+    }
+
+}
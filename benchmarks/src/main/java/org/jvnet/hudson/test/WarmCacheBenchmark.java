@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import hudson.tasks.Maven;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Provisioning once every archive has been extracted into the {@link ToolCache}, as most tests see it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {ProvisioningBenchmarks.CACHE_DIR, ProvisioningBenchmarks.BUILD_DIR})
+@State(Scope.Thread)
+public class WarmCacheBenchmark {
+
+    /** Every mode but {@link ToolHomeMode#LAZY}, which provisions nothing to measure. */
+    @Param({"PRIVATE", "SHARED", "OVERLAY"})
+    public ToolHomeMode mode;
+
+    @Setup(Level.Trial)
+    public void fillCache() throws Exception {
+        System.clearProperty("maven.home");
+        MavenInstallations.home("apache-maven-2.2.1", Maven.MavenInstallation.MAVEN_20, null, ToolHomeMode.SHARED);
+        MavenInstallations.home("apache-maven-3.5.0", Maven.MavenInstallation.MAVEN_30, null, ToolHomeMode.SHARED);
+        AntInstallations.home(null, ToolHomeMode.SHARED);
+        GradleInstallations.home(null, ToolHomeMode.SHARED);
+    }
+
+    @Benchmark
+    public File maven22(BenchmarkFolder folder) throws Exception {
+        return MavenInstallations.home("apache-maven-2.2.1", Maven.MavenInstallation.MAVEN_20, folder.next(), mode);
+    }
+
+    @Benchmark
+    public File maven35(BenchmarkFolder folder) throws Exception {
+        return MavenInstallations.home("apache-maven-3.5.0", Maven.MavenInstallation.MAVEN_30, folder.next(), mode);
+    }
+
+    @Benchmark
+    public File ant(BenchmarkFolder folder) throws Exception {
+        return AntInstallations.home(folder.next(), mode);
+    }
+
+    @Benchmark
+    public File gradle(BenchmarkFolder folder) throws Exception {
+        return GradleInstallations.home(folder.next(), mode);
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Compression of a tar archive in which a tool may be bundled instead of a zip archive,
+ * as {@code <tool>-bin<suffix>}, for example {@code apache-maven-3.5.0-bin.tar.zst}.
+ * Besides the codecs built into {@code ToolInstallations}, implementations are looked up with {@link java.util.ServiceLoader}
+ * from {@code META-INF/services/org.jvnet.hudson.test.ArchiveCodec}.
+ */
+public interface ArchiveCodec {
+
+    /**
+     * @return the suffix of archive names following {@code -bin}, for example {@code .tar.gz}
+     */
+    String getSuffix();
+
+    /**
+     * Decompresses an archive.
+     *
+     * @param compressed the archive as bundled
+     * @return the tar stream
+     */
+    InputStream decompress(InputStream compressed) throws IOException;
+
+}
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The {@link ArchiveCodec}s available, in the order archives are looked up.
+ * Plain and gzipped tar archives are always supported.
+ * Tar archives compressed with xz, Zstandard or LZ4 are supported when the usual library for the format,
+ * respectively {@code org.tukaani:xz}, {@code com.github.luben:zstd-jni} or {@code org.lz4:lz4-java},
+ * is on the class path; it is used reflectively, so that the test harness does not depend on it.
+ */
+final class ArchiveCodecs {
+
+    private static final Logger LOGGER = Logger.getLogger(ArchiveCodecs.class.getName());
+
+    private static final List<ArchiveCodec> ALL = load();
+
+    static List<ArchiveCodec> all() {
+        return ALL;
+    }
+
+    /**
+     * Looks up a codec by suffix.
+     *
+     * @return the codec, or null
+     */
+    static ArchiveCodec forSuffix(String suffix) {
+        for (ArchiveCodec codec : ALL) {
+            if (codec.getSuffix().equals(suffix)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    private static List<ArchiveCodec> load() {
+        List<ArchiveCodec> codecs = new ArrayList<ArchiveCodec>();
+        codecs.add(new Tar());
+        codecs.add(new Gzip());
+        for (ArchiveCodec codec : new ArchiveCodec[] {
+                Reflective.load(".tar.zst", "com.github.luben.zstd.ZstdInputStream"),
+                Reflective.load(".tar.lz4", "net.jpountz.lz4.LZ4FrameInputStream"),
+                Reflective.load(".tar.xz", "org.tukaani.xz.XZInputStream")}) {
+            if (codec != null) {
+                codecs.add(codec);
+            }
+        }
+        try {
+            for (ArchiveCodec codec : ServiceLoader.load(ArchiveCodec.class, JenkinsRule.class.getClassLoader())) {
+                codecs.add(codec);
+            }
+        } catch (ServiceConfigurationError x) {
+            LOGGER.log(Level.WARNING, "Cannot load archive codecs", x);
+        }
+        return Collections.unmodifiableList(codecs);
+    }
+
+    private static final class Tar implements ArchiveCodec {
+        @Override
+        public String getSuffix() {
+            return ".tar";
+        }
+
+        @Override
+        public InputStream decompress(InputStream compressed) {
+            return compressed;
+        }
+    }
+
+    private static final class Gzip implements ArchiveCodec {
+        @Override
+        public String getSuffix() {
+            return ".tar.gz";
+        }
+
+        @Override
+        public InputStream decompress(InputStream compressed) throws IOException {
+            return new GZIPInputStream(compressed, 65536);
+        }
+    }
+
+    /**
+     * A codec backed by the {@link InputStream} of an optional library, taking the compressed stream as sole constructor argument.
+     */
+    private static final class Reflective implements ArchiveCodec {
+        private final String suffix;
+        private final Constructor<? extends InputStream> constructor;
+
+        private Reflective(String suffix, Constructor<? extends InputStream> constructor) {
+            this.suffix = suffix;
+            this.constructor = constructor;
+        }
+
+        /**
+         * @return the codec, or null if the library is missing
+         */
+        static ArchiveCodec load(String suffix, String className) {
+            try {
+                Class<? extends InputStream> c = Class.forName(className, true, JenkinsRule.class.getClassLoader()).asSubclass(InputStream.class);
+                return new Reflective(suffix, c.getConstructor(InputStream.class));
+            } catch (ReflectiveOperationException | LinkageError x) {
+                LOGGER.log(Level.FINE, "No support for " + suffix, x);
+                return null;
+            }
+        }
+
+        @Override
+        public String getSuffix() {
+            return suffix;
+        }
+
+        @Override
+        public InputStream decompress(InputStream compressed) throws IOException {
+            try {
+                return constructor.newInstance(compressed);
+            } catch (InvocationTargetException x) {
+                Throwable cause = x.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            } catch (ReflectiveOperationException x) {
+                throw new IOException(x);
+            }
+        }
+    }
+
+    private ArchiveCodecs() {
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.tools.InstallSourceProperty;
+import hudson.tools.ToolInstallation;
+import hudson.tools.ToolInstaller;
+import hudson.tools.ToolInstallerDescriptor;
+import hudson.tools.ToolProperty;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Installs a tool bundled in the test harness when a build first needs it, as used by {@link ToolHomeMode#LAZY}.
+ * On the controller the tool home is the one in the {@link ToolCache}.
+ * Agents get a copy of it, streamed as one compressed archive and kept under {@code tools/bundled} in their root,
+ * keyed by the digest of the archive, so that later builds on the same agent find it there.
+ */
+public class BundledToolInstaller extends ToolInstaller {
+
+    /** Monitors serializing copies of a given tool to a given agent, keyed by node name and digest. */
+    private static final ConcurrentMap<String, Object> LOCKS = new ConcurrentHashMap<String, Object>();
+
+    /** Installations of the tools bundled in the test harness. */
+    private static final List<String> TOOL_TYPES = Arrays.asList(
+            "hudson.tasks.Maven$MavenInstallation", "hudson.tasks.Ant$AntInstallation", "hudson.plugins.gradle.GradleInstallation");
+
+    private final String tool;
+    private final String launcher;
+
+    /**
+     * @param tool name of the tool home, e.g. {@code apache-maven-3.5.0}, bundled as {@code apache-maven-3.5.0-bin.zip}
+     * @param launcher path of the launcher script within the tool home, e.g. {@code bin/mvn}
+     */
+    @DataBoundConstructor
+    public BundledToolInstaller(String tool, String launcher) {
+        super(null);
+        this.tool = tool;
+        this.launcher = launcher;
+    }
+
+    public String getTool() {
+        return tool;
+    }
+
+    public String getLauncher() {
+        return launcher;
+    }
+
+    @Override
+    public FilePath performInstallation(ToolInstallation installation, Node node, TaskListener log) throws IOException, InterruptedException {
+        File home = ToolHomes.cached(tool, launcher);
+        if (node == Jenkins.getInstance()) {
+            return new FilePath(home);
+        }
+        FilePath root = node.getRootPath();
+        if (root == null) {
+            throw new IOException(node.getNodeName() + " is offline");
+        }
+        // keyed by the digest of the archive, like the cache, so that any installation of the same tool reuses it
+        File master = home.getParentFile();
+        FilePath dir = root.child("tools").child("bundled").child(master.getName());
+        synchronized (lock(node.getNodeName() + '/' + master.getName())) {
+            if (!dir.child(ToolCache.MARKER).exists()) {
+                log.getLogger().println("Copying " + tool + " bundled in the test harness to " + node.getNodeName());
+                FilePath staging = dir.getParent().child(master.getName() + ".tmp");
+                staging.deleteRecursive();
+                dir.deleteRecursive();
+                try (ProvisioningEvent event = ProvisioningEvent.begin("transfer", tool)) {
+                    // a single gzipped tar stream over the channel, marker included, renamed into place once complete
+                    event.files(new FilePath(master).copyRecursiveTo(staging));
+                }
+                staging.renameTo(dir);
+            }
+        }
+        return dir.child(tool);
+    }
+
+    /**
+     * Path of an installation, empty if it is to be installed.
+     */
+    static String path(File home) {
+        return home != null ? home.getAbsolutePath() : "";
+    }
+
+    /**
+     * Properties of an installation, which installs the bundled tool on first use if no home was resolved.
+     */
+    static List<? extends ToolProperty<?>> properties(File home, String tool, String launcher) throws IOException {
+        if (home != null) {
+            return JenkinsRule.NO_PROPERTIES;
+        }
+        return Collections.singletonList(new InstallSourceProperty(Collections.singletonList(new BundledToolInstaller(tool, launcher))));
+    }
+
+    private static Object lock(String key) {
+        Object lock = new Object();
+        Object existing = LOCKS.putIfAbsent(key, lock);
+        return existing != null ? existing : lock;
+    }
+
+    @Extension
+    public static class DescriptorImpl extends ToolInstallerDescriptor<BundledToolInstaller> {
+
+        @Override
+        public String getDisplayName() {
+            return "Extract from the test harness";
+        }
+
+        @Override
+        public boolean isApplicable(Class<? extends ToolInstallation> toolType) {
+            // by name, so that the Ant and Gradle plugins need not be on the class path
+            return TOOL_TYPES.contains(toolType.getName());
+        }
+
+    }
+
+}
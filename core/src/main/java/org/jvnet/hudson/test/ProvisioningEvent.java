@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Times a phase of tool provisioning.
+ * Where the {@code jdk.jfr} API is available, that is on Java 11 and later and on Java 8 from update 262,
+ * each phase is committed as a Java Flight Recorder event named {@code org.jvnet.hudson.test.ToolProvisioning},
+ * so that a plain JFR recording shows where provisioning time goes;
+ * as the harness builds for older Java, the event type is defined at runtime through {@code jdk.jfr.EventFactory}.
+ * Phases are also logged at {@link Level#FINE}.
+ * A phase with nothing to record leaves the event unreferenced in its block, hence {@code @SuppressWarnings("try")}.
+ * <pre>
+ * try (ProvisioningEvent event = ProvisioningEvent.begin("extract", "apache-ant-1.8.1")) {
+ *     ...
+ *     event.files(n).bytes(size);
+ * }
+ * </pre>
+ */
+final class ProvisioningEvent implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ProvisioningEvent.class.getName());
+
+    private static final Jfr JFR = Jfr.load();
+
+    private static final Pattern NAME = Pattern.compile("(.+?)-(\\d.*)");
+
+    private final String phase;
+    private final String tool;
+    private final String version;
+    private final long start = System.nanoTime();
+    private final Object jfrEvent;
+    private long bytes;
+    private int files;
+
+    private ProvisioningEvent(String phase, String tool, String version) {
+        this.phase = phase;
+        this.tool = tool;
+        this.version = version;
+        this.jfrEvent = JFR != null ? JFR.begin() : null;
+    }
+
+    /**
+     * Starts timing a phase.
+     *
+     * @param phase for example {@code lookup}, {@code extract}, {@code materialize}, {@code probe} or {@code register}
+     * @param name name of the tool and version, for example {@code apache-maven-3.5.0}, split into both fields
+     */
+    static ProvisioningEvent begin(String phase, String name) {
+        Matcher m = NAME.matcher(name);
+        return m.matches() ? new ProvisioningEvent(phase, m.group(1), m.group(2)) : new ProvisioningEvent(phase, name, "");
+    }
+
+    ProvisioningEvent bytes(long bytes) {
+        this.bytes = bytes;
+        return this;
+    }
+
+    ProvisioningEvent files(int files) {
+        this.files = files;
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (jfrEvent != null) {
+            JFR.commit(jfrEvent, phase, tool, version, bytes, files);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "{0} of {1} {2} took {3}ms ({4} files, {5} bytes)", new Object[] {
+                    phase, tool, version, (System.nanoTime() - start) / 1000000, files, bytes});
+        }
+    }
+
+    /**
+     * Reflective access to {@code jdk.jfr}, which is not available when compiling for Java 7.
+     */
+    private static final class Jfr {
+        private final Object factory;
+        private final Method newEvent;
+        private final Method begin;
+        private final Method end;
+        private final Method shouldCommit;
+        private final Method commit;
+        private final Method set;
+
+        @SuppressWarnings("unchecked")
+        private Jfr() throws ReflectiveOperationException {
+            Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+            Constructor<?> newAnnotation = annotationElement.getConstructor(Class.class, Object.class);
+            List<Object> annotations = Arrays.asList(
+                    newAnnotation.newInstance((Class<? extends Annotation>) Class.forName("jdk.jfr.Name"), "org.jvnet.hudson.test.ToolProvisioning"),
+                    newAnnotation.newInstance((Class<? extends Annotation>) Class.forName("jdk.jfr.Label"), "Tool Provisioning"),
+                    newAnnotation.newInstance((Class<? extends Annotation>) Class.forName("jdk.jfr.Category"), new String[] {"Jenkins", "Test Harness"}));
+            Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+            Constructor<?> newField = valueDescriptor.getConstructor(Class.class, String.class);
+            List<Object> fields = Arrays.asList(
+                    newField.newInstance(String.class, "phase"),
+                    newField.newInstance(String.class, "tool"),
+                    newField.newInstance(String.class, "version"),
+                    newField.newInstance(long.class, "bytes"),
+                    newField.newInstance(int.class, "files"));
+            Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+            factory = eventFactory.getMethod("create", List.class, List.class).invoke(null, annotations, fields);
+            newEvent = eventFactory.getMethod("newEvent");
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            begin = event.getMethod("begin");
+            end = event.getMethod("end");
+            shouldCommit = event.getMethod("shouldCommit");
+            commit = event.getMethod("commit");
+            set = event.getMethod("set", int.class, Object.class);
+        }
+
+        static Jfr load() {
+            try {
+                return new Jfr();
+            } catch (ReflectiveOperationException | LinkageError x) {
+                LOGGER.log(Level.FINE, "Java Flight Recorder events are not available", x);
+                return null;
+            }
+        }
+
+        Object begin() {
+            try {
+                Object event = newEvent.invoke(factory);
+                begin.invoke(event);
+                return event;
+            } catch (ReflectiveOperationException x) {
+                LOGGER.log(Level.FINE, null, x);
+                return null;
+            }
+        }
+
+        void commit(Object event, String phase, String tool, String version, long bytes, int files) {
+            try {
+                end.invoke(event);
+                if ((Boolean) shouldCommit.invoke(event)) {
+                    List<Object> values = Arrays.<Object>asList(phase, tool, version, bytes, files);
+                    for (int i = 0; i < values.size(); i++) {
+                        set.invoke(event, i, values.get(i));
+                    }
+                    commit.invoke(event);
+                }
+            } catch (ReflectiveOperationException x) {
+                LOGGER.log(Level.FINE, null, x);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.remoting.Channel;
+import hudson.slaves.ComputerListener;
+import hudson.tools.InstallSourceProperty;
+import hudson.tools.ToolDescriptor;
+import hudson.tools.ToolInstallation;
+import hudson.tools.ToolLocationNodeProperty;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Points agents running on the same machine as the controller, such as those of {@link JenkinsRule#createSlave},
+ * at the tool homes in the {@link ToolCache}, so that builds on them need not copy bundled tools.
+ * An agent is recognized by reading the {@linkplain ToolCache#id identifier} of the cache through its channel.
+ * Installations {@linkplain ToolHomeMode#LAZY lazily} installed by a {@link BundledToolInstaller} are extracted
+ * when such an agent comes online, and get a {@link ToolLocationNodeProperty} entry taking precedence over the installer.
+ * Other installations already use controller paths, which work as is on such agents.
+ */
+@Extension
+public class SameHostToolLocations extends ComputerListener {
+
+    private static final Logger LOGGER = Logger.getLogger(SameHostToolLocations.class.getName());
+
+    @Override
+    public void preOnline(Computer c, Channel channel, FilePath root, TaskListener listener) throws IOException, InterruptedException {
+        Node node = c.getNode();
+        if (node == null || node == Jenkins.getInstance()) {
+            return;
+        }
+        // any tool type, so that only the plugins actually installed are loaded
+        List<ToolInstallation> bundled = new ArrayList<ToolInstallation>();
+        for (ToolDescriptor<?> descriptor : ToolInstallation.all()) {
+            bundled.addAll(Arrays.asList(descriptor.getInstallations()));
+        }
+        List<ToolLocationNodeProperty.ToolLocation> locations = new ArrayList<ToolLocationNodeProperty.ToolLocation>();
+        for (ToolInstallation installation : bundled) {
+            BundledToolInstaller installer = installer(installation);
+            if (installer == null) {
+                continue;
+            }
+            if (locations.isEmpty() && !isSameHost(channel)) {
+                return;
+            }
+            File home = ToolHomes.cached(installer.getTool(), installer.getLauncher());
+            locations.add(new ToolLocationNodeProperty.ToolLocation(installation.getDescriptor(), installation.getName(), home.getAbsolutePath()));
+        }
+        if (locations.isEmpty()) {
+            return;
+        }
+        ToolLocationNodeProperty existing = node.getNodeProperties().get(ToolLocationNodeProperty.class);
+        if (existing != null) {
+            // keep locations configured otherwise, but not ours from an earlier connection
+            for (ToolLocationNodeProperty.ToolLocation location : existing.getLocations()) {
+                if (!contains(locations, location)) {
+                    locations.add(location);
+                }
+            }
+        }
+        LOGGER.log(Level.FINE, "{0} shares the file system of the controller, using its tool cache", node.getNodeName());
+        node.getNodeProperties().replace(new ToolLocationNodeProperty(locations));
+    }
+
+    private static boolean contains(List<ToolLocationNodeProperty.ToolLocation> locations, ToolLocationNodeProperty.ToolLocation location) {
+        for (ToolLocationNodeProperty.ToolLocation l : locations) {
+            if (l.getType() == location.getType() && l.getName().equals(location.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static BundledToolInstaller installer(ToolInstallation installation) {
+        InstallSourceProperty property = installation.getProperties().get(InstallSourceProperty.class);
+        return property != null ? property.installers.get(BundledToolInstaller.class) : null;
+    }
+
+    private static boolean isSameHost(Channel channel) throws InterruptedException {
+        try {
+            File id = ToolCache.id();
+            String expected = new String(Files.readAllBytes(id.toPath()), "UTF-8");
+            return expected.equals(new FilePath(channel, id.getPath()).readToString());
+        } catch (IOException x) {
+            // typically no such file on the agent
+            LOGGER.log(Level.FINE, null, x);
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,445 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipEntry;
+
+/**
+ * Extracts a tar archive, decompressed by an {@link ArchiveCodec}, straight from its URL.
+ * Unlike a zip archive, a tar stream can only be read in order: small files are read into the heap and written by
+ * a pool of threads, as {@link ZipExtractor} does, while large ones are written as they are read.
+ * Supports ustar and GNU long names, and the path, link path and size of pax headers.
+ * Permissions are applied and files {@linkplain ToolObjects shared} as for a zip archive.
+ */
+final class TarExtractor {
+
+    private static final int BLOCK = 512;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Files up to this size are buffered and written in the background. */
+    private static final int BUFFERED = 1 << 20;
+
+    /** Bound on the bytes buffered at any time. */
+    private static final int MAX_BUFFERED = 64 << 20;
+
+    /**
+     * Extracts the entries of an archive included by a manifest into a directory.
+     *
+     * @return the entries extracted, described as {@linkplain ZipEntry#STORED stored} zip entries
+     */
+    static List<ZipArchive.Entry> extract(URL archive, ArchiveCodec codec, File target, ToolManifest manifest) throws IOException, InterruptedException {
+        return extract(archive, codec, target, manifest, ZipExtractor.PARALLELISM);
+    }
+
+    static List<ZipArchive.Entry> extract(URL archive, ArchiveCodec codec, File target, ToolManifest manifest, int parallelism) throws IOException, InterruptedException {
+        String root = target.getCanonicalPath() + File.separator;
+        List<ZipArchive.Entry> entries = new ArrayList<ZipArchive.Entry>();
+        List<ZipArchive.Entry> dirs = new ArrayList<ZipArchive.Entry>();
+        List<Future<Void>> writes = new ArrayList<Future<Void>>();
+        final Semaphore buffered = new Semaphore(MAX_BUFFERED);
+        ExecutorService pool = parallelism > 1 ? Executors.newFixedThreadPool(parallelism, new ZipExtractor.ExtractorThreadFactory()) : null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                codec.decompress(new BufferedInputStream(archive.openStream(), 65536)), 65536))) {
+            byte[] header = new byte[BLOCK];
+            String paxPath = null;
+            String paxLink = null;
+            long paxSize = -1;
+            while (true) {
+                in.readFully(header);
+                if (isZero(header)) {
+                    break;
+                }
+                verifyChecksum(header, archive);
+                char type = (char) header[156];
+                long size = number(header, 124, 12);
+                if (type == 'L' || type == 'K' || type == 'x' || type == 'g') {
+                    byte[] data = read(in, size);
+                    if (type == 'L') {
+                        paxPath = string(data, 0, data.length);
+                    } else if (type == 'K') {
+                        paxLink = string(data, 0, data.length);
+                    } else if (type == 'x') {
+                        for (String[] record : pax(data)) {
+                            if (record[0].equals("path")) {
+                                paxPath = record[1];
+                            } else if (record[0].equals("linkpath")) {
+                                paxLink = record[1];
+                            } else if (record[0].equals("size")) {
+                                paxSize = Long.parseLong(record[1]);
+                            }
+                        }
+                    }
+                    continue;
+                }
+                if (paxSize >= 0) {
+                    size = paxSize;
+                }
+                String name = paxPath != null ? paxPath : name(header);
+                String link = paxLink != null ? paxLink : string(header, 157, 100);
+                paxPath = null;
+                paxLink = null;
+                paxSize = -1;
+                if (name.startsWith("./")) {
+                    name = name.substring(2);
+                }
+                if (name.isEmpty() || !manifest.includes(type == '5' && !name.endsWith("/") ? name + "/" : name)) {
+                    skip(in, size + padding(size));
+                    continue;
+                }
+                final int mode = (int) number(header, 100, 8) & 07777;
+                final long time = number(header, 136, 12) * 1000;
+                final File f = new File(target, name);
+                if (!f.getCanonicalPath().startsWith(root) && !(f.getCanonicalPath() + File.separator).equals(root)) {
+                    throw new IOException(name + " escapes " + target);
+                }
+                switch (type) {
+                case '5':
+                    Files.createDirectories(f.toPath());
+                    ZipArchive.Entry dir = entry(name.endsWith("/") ? name : name + "/", time, 0, mode);
+                    dirs.add(dir);
+                    entries.add(dir);
+                    skip(in, size + padding(size));
+                    break;
+                case '0':
+                case '\0':
+                case '7':
+                    Files.createDirectories(f.getParentFile().toPath());
+                    if (pool != null && size <= BUFFERED) {
+                        final byte[] data = read(in, size);
+                        buffered.acquire(data.length);
+                        writes.add(pool.submit(new Callable<Void>() {
+                            @Override
+                            public Void call() throws IOException {
+                                try {
+                                    write(new ByteArrayInputStream(data), f, mode, time);
+                                } finally {
+                                    buffered.release(data.length);
+                                }
+                                return null;
+                            }
+                        }));
+                    } else {
+                        write(new EntryInputStream(in, size), f, mode, time);
+                        skip(in, padding(size));
+                    }
+                    entries.add(entry(name, time, size, mode));
+                    break;
+                case '1':
+                case '2':
+                    Files.createDirectories(f.getParentFile().toPath());
+                    // new File(parent, link) would take an absolute link for a relative one
+                    if (Paths.get(link).isAbsolute()) {
+                        throw new IOException(name + " links to " + link + " outside of " + target);
+                    }
+                    File linked = type == '1' ? new File(target, link) : new File(f.getParentFile(), link);
+                    if (!linked.getCanonicalPath().startsWith(root)) {
+                        throw new IOException(name + " links to " + link + " outside of " + target);
+                    }
+                    if (type == '1') {
+                        // the linked file may still be being written
+                        await(writes);
+                        Files.createLink(f.toPath(), linked.toPath());
+                    } else {
+                        Files.createSymbolicLink(f.toPath(), Paths.get(link));
+                    }
+                    entries.add(entry(name, time, 0, mode));
+                    skip(in, size + padding(size));
+                    break;
+                default:
+                    // devices, FIFOs and the like have no place in a tool
+                    skip(in, size + padding(size));
+                }
+            }
+            await(writes);
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+        // directory permissions and timestamps last, as writing their children touches them
+        for (ZipArchive.Entry e : dirs) {
+            File d = new File(target, e.name);
+            ZipExtractor.chmod(d, e.mode);
+            d.setLastModified(e.time);
+        }
+        return entries;
+    }
+
+    private static ZipArchive.Entry entry(String name, long time, long size, int mode) {
+        return new ZipArchive.Entry(name, ZipEntry.STORED, time, 0, size, size, mode, -1, -1);
+    }
+
+    private static void write(InputStream in, File f, int mode, long time) throws IOException {
+        MessageDigest md = ToolObjects.ENABLED ? ToolCache.sha256() : null;
+        try (InputStream data = md != null ? new DigestInputStream(in, md) : in) {
+            Files.copy(data, f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        ZipExtractor.chmod(f, mode);
+        f.setLastModified(time);
+        if (md != null) {
+            ToolObjects.share(f, md.digest());
+        }
+    }
+
+    private static void await(List<Future<Void>> writes) throws IOException, InterruptedException {
+        for (Future<Void> f : writes) {
+            try {
+                f.get();
+            } catch (ExecutionException x) {
+                Throwable cause = x.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+        writes.clear();
+    }
+
+    /**
+     * Reads the data of an entry and its padding.
+     */
+    private static byte[] read(DataInputStream in, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Entry too large: " + size);
+        }
+        byte[] data = new byte[(int) size];
+        in.readFully(data);
+        skip(in, padding(size));
+        return data;
+    }
+
+    private static void skip(InputStream in, long size) throws IOException {
+        long remaining = size;
+        while (remaining > 0) {
+            long n = in.skip(remaining);
+            if (n <= 0) {
+                if (in.read() == -1) {
+                    throw new EOFException("Truncated tar archive");
+                }
+                n = 1;
+            }
+            remaining -= n;
+        }
+    }
+
+    private static long padding(long size) {
+        return (BLOCK - size % BLOCK) % BLOCK;
+    }
+
+    private static boolean isZero(byte[] header) {
+        for (byte b : header) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void verifyChecksum(byte[] header, URL archive) throws IOException {
+        long expected = number(header, 148, 8);
+        long unsigned = 0;
+        long signed = 0;
+        for (int i = 0; i < BLOCK; i++) {
+            byte b = i >= 148 && i < 156 ? (byte) ' ' : header[i];
+            unsigned += b & 0xff;
+            signed += b;
+        }
+        if (expected != unsigned && expected != signed) {
+            throw new IOException("Corrupt tar header in " + archive);
+        }
+    }
+
+    /**
+     * The name of an entry, with the ustar prefix if any.
+     */
+    private static String name(byte[] header) {
+        String name = string(header, 0, 100);
+        if (string(header, 257, 5).equals("ustar")) {
+            String prefix = string(header, 345, 155);
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Parses a numeric field, either octal or, for large values, base-256 with the high bit of the first byte set.
+     */
+    private static long number(byte[] header, int offset, int length) throws IOException {
+        long value = 0;
+        if ((header[offset] & 0x80) != 0) {
+            value = header[offset] & 0x7f;
+            for (int i = 1; i < length; i++) {
+                value = (value << 8) | (header[offset + i] & 0xff);
+            }
+            return value;
+        }
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || b == ' ') {
+                if (value != 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Invalid number in tar header");
+            }
+            value = value * 8 + (b - '0');
+        }
+        return value;
+    }
+
+    private static String string(byte[] data, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && data[end] != 0) {
+            end++;
+        }
+        return new String(data, offset, end - offset, UTF8);
+    }
+
+    /**
+     * Parses pax records, {@code <length> <key>=<value>\n}, into key and value pairs.
+     */
+    private static List<String[]> pax(byte[] data) throws IOException {
+        List<String[]> records = new ArrayList<String[]>();
+        int pos = 0;
+        while (pos < data.length) {
+            int space = pos;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(new String(data, pos, space - pos, UTF8));
+            } catch (NumberFormatException x) {
+                throw new IOException("Invalid pax header", x);
+            }
+            if (length <= space - pos || pos + length > data.length) {
+                throw new IOException("Invalid pax header");
+            }
+            String record = new String(data, space + 1, pos + length - space - 2, UTF8);
+            int eq = record.indexOf('=');
+            if (eq > 0) {
+                records.add(new String[] {record.substring(0, eq), record.substring(eq + 1)});
+            }
+            pos += length;
+        }
+        return records;
+    }
+
+    /**
+     * The data of an entry within the tar stream, which is left open.
+     */
+    private static final class EntryInputStream extends FilterInputStream {
+        private long remaining;
+
+        EntryInputStream(InputStream in, long size) {
+            super(in);
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Truncated tar archive");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n == -1) {
+                throw new EOFException("Truncated tar archive");
+            }
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // drain, so that the next header can be read
+            while (remaining > 0) {
+                if (skip(remaining) <= 0 && read() == -1) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private TarExtractor() {
+    }
+
+}
@@ -0,0 +1,353 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Machine-wide cache of the tool archives bundled in the test harness.
+ * Each archive is extracted once into a directory named after the SHA-256 of its content,
+ * so that it can be reused by every test and every build on the machine.
+ */
+final class ToolCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ToolCache.class.getName());
+
+    /** Prefix of the system properties tuning provisioning, named after the class which used to do it all. */
+    static final String PROPERTIES = "org.jvnet.hudson.test.ToolInstallations.";
+
+    /**
+     * Location of the cache, by default {@code ~/.cache/jenkins-test-harness-tools}.
+     * May be overridden with the system property {@code org.jvnet.hudson.test.ToolInstallations.cacheDir}.
+     */
+    static final File ROOT = root();
+
+    /**
+     * File written into a directory once an archive has been completely extracted into it.
+     */
+    static final String MARKER = ".extracted";
+
+    /** Digests of archives already computed in this JVM, keyed by resource URL. */
+    private static final ConcurrentMap<String, String> DIGESTS = new ConcurrentHashMap<String, String>();
+
+    /** Monitors serializing extraction of a given archive among threads of this JVM, keyed by digest. */
+    private static final ConcurrentMap<String, Object> LOCKS = new ConcurrentHashMap<String, Object>();
+
+    private static File root() {
+        String dir = System.getProperty(PROPERTIES + "cacheDir");
+        if (dir != null) {
+            // tool homes link into the cache, so a relative path would not do
+            return new File(dir).getAbsoluteFile();
+        }
+        String xdg = System.getenv("XDG_CACHE_HOME");
+        File base = xdg != null ? new File(xdg) : new File(System.getProperty("user.home"), ".cache");
+        return new File(base, "jenkins-test-harness-tools");
+    }
+
+    /**
+     * Returns the directory into which a bundled archive has been extracted, extracting it first if needed.
+     * Only the paths listed in the {@link ToolManifest} of the tool are extracted, and the directory is named after
+     * the manifest as well as the archive.
+     * Extraction is guarded by a file lock, so that concurrent test JVMs, such as parallel surefire forks,
+     * extract a given archive only once and wait for each other.
+     * It happens in a staging directory which is only renamed into place once complete,
+     * so a directory carrying the {@link #MARKER} may be trusted without looking into it.
+     * What it contains is made read-only, so that a test writing into a tool home fails rather than corrupting the cache.
+     *
+     * @param archive name of the archive resource, e.g. {@code apache-ant-1.8.1-bin.zip}, which may also be bundled
+     *     as a tar archive in any of the {@linkplain ArchiveCodecs codecs}, e.g. {@code apache-ant-1.8.1-bin.tar.gz},
+     *     or as a {@linkplain ToolDeltas delta}
+     * @param launcher path of the launcher script within the archive, made executable should the archive not say so
+     */
+    static File extract(String archive, String launcher) throws IOException, InterruptedException {
+        return extract(JenkinsRule.class.getClassLoader(), archive, launcher);
+    }
+
+    /**
+     * Like {@link #extract(String, String)}, looking up the archive in a given class loader.
+     */
+    @SuppressWarnings("try")
+    static File extract(ClassLoader loader, String archive, String launcher) throws IOException, InterruptedException {
+        String tool = archive.replaceFirst("-bin\\.zip$", "");
+        URL url;
+        ArchiveCodec codec = null;
+        ToolDeltas delta = null;
+        ToolManifest manifest;
+        String digest;
+        try (ProvisioningEvent event = ProvisioningEvent.begin("lookup", tool)) {
+            url = loader.getResource(archive);
+            if (url == null) {
+                for (ArchiveCodec c : ArchiveCodecs.all()) {
+                    url = loader.getResource(tool + "-bin" + c.getSuffix());
+                    if (url != null) {
+                        codec = c;
+                        break;
+                    }
+                }
+            }
+            if (url != null) {
+                digest = digest(url);
+            } else {
+                delta = ToolDeltas.find(loader, tool);
+                digest = sha256(digest(delta.delta) + digest(delta.list) + digest(delta.base));
+            }
+            manifest = ToolManifest.forTool(tool);
+            if (!manifest.key().isEmpty()) {
+                digest = sha256(digest + manifest.key());
+            }
+        }
+        File dir = new File(ROOT, digest);
+        if (isComplete(dir)) {
+            return dir;
+        }
+        // FileLock is held on behalf of the whole JVM, so threads must be kept apart separately
+        synchronized (lock(digest)) {
+            Files.createDirectories(ROOT.toPath());
+            try (FileChannel ch = FileChannel.open(new File(ROOT, digest + ".lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = ch.lock()) {
+                if (!isComplete(dir)) {
+                    // leftovers of an extraction killed halfway through, by an earlier version of this class or not
+                    delete(dir);
+                    try (DirectoryStream<Path> stale = Files.newDirectoryStream(ROOT.toPath(), digest + ".tmp*")) {
+                        for (Path p : stale) {
+                            delete(p.toFile());
+                        }
+                    }
+                    LOGGER.log(Level.INFO, "Extracting {0} bundled in the test harness into {1}", new Object[] {archive, dir});
+                    File staging = Files.createTempDirectory(ROOT.toPath(), digest + ".tmp").toFile();
+                    try {
+                        try (ProvisioningEvent event = ProvisioningEvent.begin("extract", tool)) {
+                            List<ZipArchive.Entry> entries = delta != null ? delta.extract(staging, manifest)
+                                    : codec != null ? TarExtractor.extract(url, codec, staging, manifest) : ZipExtractor.extract(url, staging, manifest);
+                            long bytes = 0;
+                            for (ZipArchive.Entry e : entries) {
+                                bytes += e.size;
+                            }
+                            event.files(entries.size()).bytes(bytes);
+                        }
+                        try (ProvisioningEvent event = ProvisioningEvent.begin("permissions", tool)) {
+                            File script = new File(staging, launcher);
+                            if (!script.canExecute()) {
+                                ToolObjects.setExecutable(script);
+                                event.files(1);
+                            }
+                        }
+                        Files.write(new File(staging, MARKER).toPath(), (archive + "\n").getBytes("UTF-8"));
+                        setWritable(staging, false);
+                        Files.move(staging.toPath(), dir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    } finally {
+                        delete(staging);
+                    }
+                }
+            }
+        }
+        return dir;
+    }
+
+    /**
+     * Checks whether a tool directory was completely extracted.
+     */
+    static boolean isComplete(File dir) {
+        return new File(dir, MARKER).isFile();
+    }
+
+    private static Object lock(String digest) {
+        Object lock = new Object();
+        Object existing = LOCKS.putIfAbsent(digest, lock);
+        return existing != null ? existing : lock;
+    }
+
+    /**
+     * Deletes a directory tree, if it exists, even if {@linkplain #setWritable read-only}.
+     */
+    static void delete(File dir) throws IOException {
+        if (!dir.exists()) {
+            return;
+        }
+        Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                dir.toFile().setWritable(true);
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                try {
+                    Files.delete(file);
+                } catch (AccessDeniedException x) {
+                    // Windows does not delete read-only files; elsewhere the file may be linked to a shared object
+                    // which must stay read-only, and as the directory is writable there is no need to touch it
+                    if (attrs.isSymbolicLink() || !file.toFile().setWritable(true)) {
+                        throw x;
+                    }
+                    Files.delete(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException x) throws IOException {
+                if (x != null) {
+                    throw x;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Makes a directory tree writable by its owner, or read-only for everyone.
+     * Symbolic links are left alone, so that nothing outside of the tree is touched.
+     */
+    static void setWritable(File dir, final boolean writable) throws IOException {
+        Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                dir.toFile().setWritable(writable, writable);
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!attrs.isSymbolicLink()) {
+                    file.toFile().setWritable(writable, writable);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Looks up a value remembered by an earlier test JVM on this machine.
+     *
+     * @param kind namespace of the value, used as a subdirectory of the cache
+     * @param key arbitrary key, hashed into a file name
+     * @return the value, or null if none was stored
+     */
+    static String recall(String kind, String key) throws IOException {
+        File f = new File(new File(ROOT, kind), sha256(key));
+        if (!f.isFile()) {
+            return null;
+        }
+        return new String(Files.readAllBytes(f.toPath()), "UTF-8");
+    }
+
+    /**
+     * Remembers a value for later test JVMs on this machine.
+     * The file is written aside and then renamed, so concurrent readers see either nothing or the whole value.
+     */
+    static void remember(String kind, String key, String value) throws IOException {
+        File dir = new File(ROOT, kind);
+        Files.createDirectories(dir.toPath());
+        Path tmp = Files.createTempFile(dir.toPath(), "memo", ".tmp");
+        try {
+            Files.write(tmp, value.getBytes("UTF-8"));
+            Files.move(tmp, new File(dir, sha256(key)).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Returns the file holding a random identifier of this cache, created if needed,
+     * by which an agent sharing the file system of this JVM can be recognized.
+     */
+    static File id() throws IOException {
+        File f = new File(ROOT, "id");
+        if (!f.isFile()) {
+            Files.createDirectories(ROOT.toPath());
+            Path tmp = Files.createTempFile(ROOT.toPath(), "id", ".tmp");
+            try {
+                Files.write(tmp, UUID.randomUUID().toString().getBytes("UTF-8"));
+                Files.move(tmp, f.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        return f;
+    }
+
+    private static String digest(URL url) throws IOException {
+        String key = url.toExternalForm();
+        String digest = DIGESTS.get(key);
+        if (digest == null) {
+            MessageDigest md = sha256();
+            byte[] buf = new byte[8192];
+            try (InputStream in = url.openStream()) {
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    md.update(buf, 0, n);
+                }
+            }
+            digest = hex(md.digest());
+            DIGESTS.put(key, digest);
+        }
+        return digest;
+    }
+
+    private static String sha256(String s) throws IOException {
+        return hex(sha256().digest(s.getBytes("UTF-8")));
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException x) {
+            throw new AssertionError(x);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private ToolCache() {
+    }
+
+}
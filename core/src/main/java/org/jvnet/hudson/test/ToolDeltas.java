@@ -0,0 +1,217 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tools bundled as a delta against another version, to keep the test harness small.
+ * A delta is made of two resources: {@code <tool>-delta.zip} holding the entries of {@code <tool>-bin.zip}
+ * not found in the base archive, and {@code <tool>-delta.list}, naming the base archive on its first line
+ * ({@code base apache-maven-3.5.0-bin.zip}) then listing the other entries, each with the base entry having
+ * the same content and mode ({@code apache-maven-3.0.1/lib/foo.jar<TAB>apache-maven-3.5.0/lib/foo.jar}).
+ * Deltas are computed at build time by {@link #main}.
+ */
+final class ToolDeltas {
+
+    private static final Logger LOGGER = Logger.getLogger(ToolDeltas.class.getName());
+
+    static final String ARCHIVE = "-bin.zip";
+    static final String DELTA = "-delta.zip";
+    static final String LIST = "-delta.list";
+
+    final URL delta;
+    final URL list;
+    final URL base;
+    /** Entries of the base archive keyed by the names to extract them as. */
+    final Map<String, String> names;
+
+    private ToolDeltas(URL delta, URL list, URL base, Map<String, String> names) {
+        this.delta = delta;
+        this.list = list;
+        this.base = base;
+        this.names = names;
+    }
+
+    /**
+     * Looks up the delta of a tool.
+     *
+     * @param tool e.g. {@code apache-maven-3.0.1}
+     */
+    static ToolDeltas find(ClassLoader loader, String tool) throws IOException {
+        URL delta = loader.getResource(tool + DELTA);
+        URL list = loader.getResource(tool + LIST);
+        if (delta == null || list == null) {
+            throw new FileNotFoundException(tool + ARCHIVE + " is not bundled in the test harness");
+        }
+        URL base = null;
+        Map<String, String> names = new LinkedHashMap<String, String>();
+        try (InputStream in = list.openStream();
+             BufferedReader r = new BufferedReader(new InputStreamReader(in, "UTF-8"))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (base == null) {
+                    if (!line.startsWith("base ")) {
+                        throw new IOException("Corrupt " + list);
+                    }
+                    base = loader.getResource(line.substring(5));
+                    if (base == null) {
+                        throw new FileNotFoundException(line.substring(5) + " is not bundled in the test harness");
+                    }
+                } else if (!line.isEmpty()) {
+                    int tab = line.indexOf('\t');
+                    names.put(line.substring(0, tab), line.substring(tab + 1));
+                }
+            }
+        }
+        if (base == null) {
+            throw new IOException("Corrupt " + list);
+        }
+        return new ToolDeltas(delta, list, base, names);
+    }
+
+    /**
+     * Reconstructs the entries of the tool included by a manifest into a directory.
+     *
+     * @return the entries extracted
+     */
+    List<ZipArchive.Entry> extract(File target, ToolManifest manifest) throws IOException, InterruptedException {
+        List<ZipArchive.Entry> entries = new ArrayList<ZipArchive.Entry>(ZipExtractor.extract(delta, target, manifest));
+        Map<String, String> included = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, String> name : names.entrySet()) {
+            if (manifest.includes(name.getKey())) {
+                included.put(name.getKey(), name.getValue());
+            }
+        }
+        entries.addAll(ZipExtractor.extract(base, target, included));
+        return entries;
+    }
+
+    /**
+     * Replaces archives by deltas against a base archive, in a directory.
+     * Run by the build as {@code ToolDeltas <dir> <base> <tool>...},
+     * e.g. {@code ToolDeltas target/classes apache-maven-3.5.0 apache-maven-3.0.1 apache-maven-3.1.0}.
+     */
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args[0]);
+        for (int i = 2; i < args.length; i++) {
+            pack(dir, args[1], args[i]);
+        }
+    }
+
+    private static void pack(File dir, String base, String tool) throws IOException {
+        File archive = new File(dir, tool + ARCHIVE);
+        ZipArchive b = ZipArchive.open(new File(dir, base + ARCHIVE).toURI().toURL());
+        ZipArchive t = ZipArchive.open(archive.toURI().toURL());
+        Map<String, List<ZipArchive.Entry>> candidates = new HashMap<String, List<ZipArchive.Entry>>();
+        for (ZipArchive.Entry e : b.entries()) {
+            if (!e.isDirectory()) {
+                String key = key(e);
+                if (!candidates.containsKey(key)) {
+                    candidates.put(key, new ArrayList<ZipArchive.Entry>());
+                }
+                candidates.get(key).add(e);
+            }
+        }
+        List<ZipArchive.Entry> kept = new ArrayList<ZipArchive.Entry>();
+        StringBuilder list = new StringBuilder("base ").append(base).append(ARCHIVE).append('\n');
+        long shared = 0;
+        for (ZipArchive.Entry e : t.entries()) {
+            ZipArchive.Entry match = null;
+            if (!e.isDirectory() && candidates.containsKey(key(e))) {
+                for (ZipArchive.Entry c : candidates.get(key(e))) {
+                    if (sameContent(t, e, b, c)) {
+                        match = c;
+                        break;
+                    }
+                }
+            }
+            if (match != null) {
+                list.append(e.name).append('\t').append(match.name).append('\n');
+                shared += e.compressedSize;
+            } else {
+                kept.add(e);
+            }
+        }
+        t.write(kept, new File(dir, tool + DELTA));
+        Files.write(new File(dir, tool + LIST).toPath(), list.toString().getBytes("UTF-8"));
+        Files.delete(archive.toPath());
+        LOGGER.log(Level.INFO, "{0}: {1} bytes shared with {2}", new Object[] {tool, shared, base});
+    }
+
+    private static String key(ZipArchive.Entry e) {
+        return e.crc + ":" + e.size + ":" + e.mode;
+    }
+
+    private static boolean sameContent(ZipArchive a, ZipArchive.Entry e, ZipArchive b, ZipArchive.Entry f) throws IOException {
+        try (InputStream in1 = a.open(e); InputStream in2 = b.open(f)) {
+            byte[] buf1 = new byte[8192];
+            byte[] buf2 = new byte[8192];
+            while (true) {
+                int n = read(in1, buf1);
+                if (n != read(in2, buf2)) {
+                    return false;
+                }
+                if (n <= 0) {
+                    return true;
+                }
+                for (int i = 0; i < n; i++) {
+                    if (buf1[i] != buf2[i]) {
+                        return false;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills a buffer as far as possible.
+     */
+    private static int read(InputStream in, byte[] buf) throws IOException {
+        int total = 0;
+        while (total < buf.length) {
+            int n = in.read(buf, total, buf.length - total);
+            if (n == -1) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+}
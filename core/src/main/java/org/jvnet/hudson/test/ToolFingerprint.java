@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import hudson.tasks.Maven;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+
+/**
+ * Determines the version of a tool installation from the files it contains, without running it.
+ */
+final class ToolFingerprint {
+
+    private static final Logger LOGGER = Logger.getLogger(ToolFingerprint.class.getName());
+
+    private static final Pattern MAVEN_JAR = Pattern.compile("maven-core-(.+)\\.jar|maven-(.+)-uber\\.jar");
+    private static final Pattern GRADLE_JAR = Pattern.compile("gradle-core-(.+)\\.jar");
+
+    /**
+     * Reads the version of a Maven home from {@code pom.properties} in {@code lib/maven-core-*.jar},
+     * or in {@code lib/maven-*-uber.jar} for Maven 2.0 to 2.2.
+     *
+     * @return the version, or null if this does not look like a Maven home
+     */
+    static String mavenVersion(File home) {
+        File jar = find(home, MAVEN_JAR);
+        if (jar == null) {
+            return null;
+        }
+        try (JarFile j = new JarFile(jar)) {
+            ZipEntry e = j.getEntry("META-INF/maven/org.apache.maven/maven-core/pom.properties");
+            if (e != null) {
+                Properties props = new Properties();
+                try (InputStream in = j.getInputStream(e)) {
+                    props.load(in);
+                }
+                String version = props.getProperty("version");
+                if (version != null) {
+                    return version;
+                }
+            }
+        } catch (IOException x) {
+            LOGGER.log(Level.FINE, "Could not read " + jar, x);
+        }
+        Matcher m = MAVEN_JAR.matcher(jar.getName());
+        m.matches();
+        return m.group(1) != null ? m.group(1) : m.group(2);
+    }
+
+    /**
+     * Reads the version of an Ant home from {@code lib/ant.jar}.
+     *
+     * @return the version, or null if this does not look like an Ant home
+     */
+    static String antVersion(File home) {
+        File jar = new File(home, "lib/ant.jar");
+        if (!jar.isFile()) {
+            return null;
+        }
+        try (JarFile j = new JarFile(jar)) {
+            ZipEntry e = j.getEntry("org/apache/tools/ant/version.txt");
+            if (e != null) {
+                Properties props = new Properties();
+                try (InputStream in = j.getInputStream(e)) {
+                    props.load(in);
+                }
+                String version = props.getProperty("VERSION");
+                if (version != null) {
+                    return version;
+                }
+            }
+            Manifest mf = j.getManifest();
+            if (mf != null) {
+                Attributes attrs = mf.getAttributes("org/apache/tools/ant/");
+                String version = attrs != null ? attrs.getValue(Attributes.Name.IMPLEMENTATION_VERSION) : null;
+                if (version == null) {
+                    version = mf.getMainAttributes().getValue(Attributes.Name.IMPLEMENTATION_VERSION);
+                }
+                if (version != null) {
+                    return version;
+                }
+            }
+        } catch (IOException x) {
+            LOGGER.log(Level.FINE, "Could not read " + jar, x);
+        }
+        return null;
+    }
+
+    /**
+     * Takes the version of a Gradle home from the name of {@code lib/gradle-core-*.jar}.
+     *
+     * @return the version, or null if this does not look like a Gradle home
+     */
+    static String gradleVersion(File home) {
+        File jar = find(home, GRADLE_JAR);
+        if (jar == null) {
+            return null;
+        }
+        Matcher m = GRADLE_JAR.matcher(jar.getName());
+        m.matches();
+        return m.group(1);
+    }
+
+    /**
+     * Offline counterpart of {@link Maven.MavenInstallation#meetsMavenReqVersion}, making the same checks:
+     * each requirement stands for a major line, {@code MAVEN_21} being 2.x without 2.0.x.
+     *
+     * @param mavenReqVersion one of {@link Maven.MavenInstallation#MAVEN_20}, {@link Maven.MavenInstallation#MAVEN_21}
+     *    and {@link Maven.MavenInstallation#MAVEN_30}
+     */
+    static boolean meetsMavenReqVersion(String version, int mavenReqVersion) {
+        switch (mavenReqVersion) {
+        case Maven.MavenInstallation.MAVEN_20:
+            return version.startsWith("2.");
+        case Maven.MavenInstallation.MAVEN_21:
+            return version.startsWith("2.") && !version.startsWith("2.0");
+        case Maven.MavenInstallation.MAVEN_30:
+            return version.startsWith("3.");
+        default:
+            throw new IllegalArgumentException("Unknown Maven version requirement " + mavenReqVersion);
+        }
+    }
+
+    private static File find(File home, final Pattern pattern) {
+        File[] jars = new File(home, "lib").listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return pattern.matcher(name).matches();
+            }
+        });
+        return jars != null && jars.length > 0 ? jars[0] : null;
+    }
+
+    private ToolFingerprint() {
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.util.Locale;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * How the home of a bundled tool is laid out for a test.
+ */
+public enum ToolHomeMode {
+    /**
+     * The tool is materialized in the test's {@link TemporaryFolder}, which the test may freely modify,
+     * unless hard links were asked for with the system property {@code org.jvnet.hudson.test.ToolInstallations.materialization}.
+     * Methods taking no {@link TemporaryFolder}, such as {@code MavenInstallations.configureMaven35()},
+     * materialize it once in the build directory, for all tests of the project.
+     */
+    PRIVATE,
+    /**
+     * The installation points straight at the machine-wide cache, and the {@link TemporaryFolder} is not used.
+     * This costs nothing per test, but the test must treat the tool home as read-only.
+     */
+    SHARED,
+    /**
+     * Only the paths a test is expected to modify, {@code conf} by default, are copied into the {@link TemporaryFolder};
+     * everything else links to the machine-wide cache, which the test must not modify through those links.
+     * The paths may be set with the system property {@code org.jvnet.hudson.test.ToolInstallations.overlayPaths},
+     * for example {@code conf,lib/ext}.
+     */
+    OVERLAY,
+    /**
+     * The installation is registered at once, and the tool is only extracted into the machine-wide cache when a build
+     * first uses it, by a {@link BundledToolInstaller}; tests which never launch the tool pay nothing.
+     * As with {@link #SHARED}, the test must treat the tool home as read-only.
+     * A tool found outside the test harness, such as in {@code maven.home}, is used as is.
+     */
+    LAZY;
+
+    /**
+     * The mode used when none is given, {@link #PRIVATE} unless the system property
+     * {@code org.jvnet.hudson.test.ToolInstallations.homeMode} says otherwise.
+     */
+    static ToolHomeMode getDefault() {
+        return valueOf(System.getProperty(ToolCache.PROPERTIES + "homeMode", "private").toUpperCase(Locale.ENGLISH));
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Materializes per-test tool homes out of a master copy in the {@link ToolCache}.
+ * Copy-on-write clones (reflinks) are used where the file system supports them, else plain copies,
+ * so a test always gets a writable home of its own.
+ * Hard links may be used instead, but only when asked for: a hard-linked file shares its content with the cache,
+ * which is read-only, so a test may delete or replace it, but not write into it.
+ * Alternatively an {@linkplain #overlay overlay} only copies the paths a test is expected to modify.
+ */
+final class ToolHomes {
+
+    private static final Logger LOGGER = Logger.getLogger(ToolHomes.class.getName());
+
+    enum Materialization {
+        /** Copy-on-write clone of the whole tree, as done by {@code cp --reflink}. */
+        REFLINK,
+        /** Hard link to each file of the master copy, which stays read-only. */
+        LINK,
+        /** Plain copy of each file. */
+        COPY
+    }
+
+    /**
+     * The strategy tried before falling back to plain copies, {@code reflink} by default.
+     * May be set with the system property {@code org.jvnet.hudson.test.ToolInstallations.materialization},
+     * for example to {@code link} for tests which never write into their tool homes.
+     */
+    static final Materialization MATERIALIZATION = Materialization.valueOf(System.getProperty(
+            ToolCache.PROPERTIES + "materialization", "reflink").toUpperCase(Locale.ENGLISH));
+
+    /**
+     * Paths of a tool home which an overlay copies rather than links, {@code conf} by default.
+     * May be set as a comma-separated list with the system property {@code org.jvnet.hudson.test.ToolInstallations.overlayPaths},
+     * for example {@code conf,lib/ext}.
+     */
+    static final List<String> OVERLAY_PATHS = Arrays.asList(System.getProperty(
+            ToolCache.PROPERTIES + "overlayPaths", "conf").split("\\s*,\\s*"));
+
+    /** File stores found not to support a strategy, so that it is not attempted on every call. */
+    private static final ConcurrentMap<FileStore, Materialization> UNSUPPORTED = new ConcurrentHashMap<FileStore, Materialization>();
+
+    /**
+     * Looks for a tool home extracted by the build of the project under test, as shown in the README of this project,
+     * into the directory named by the {@code buildDirectory} system property.
+     * A bare directory may be what is left of an extraction killed halfway through, so only a complete one is trusted.
+     *
+     * @param dir name of the tool home, e.g. {@code apache-maven-3.5.0}
+     * @return the tool home, or null
+     */
+    static File prebuilt(String dir) {
+        File buildDirectory = new File(System.getProperty("buildDirectory", "target")); // TODO relative path
+        File home = new File(buildDirectory, dir);
+        return ToolCache.isComplete(home) ? home : null;
+    }
+
+    /**
+     * Extracts a bundled tool into the {@link ToolCache}.
+     *
+     * @param dir top-level directory of the archive {@code <dir>-bin.zip}, which is the tool home
+     * @param launcher path of the launcher script within the tool home
+     * @return the tool home in the cache
+     */
+    static File cached(String dir, String launcher) throws IOException, InterruptedException {
+        return new File(ToolCache.extract(dir + "-bin.zip", dir + "/" + launcher), dir);
+    }
+
+    /**
+     * Lays out the home of a test according to the mode.
+     *
+     * @param master a tool home which must not be modified
+     * @param tmp where to lay out the home, or null for the {@linkplain #layOutInBuildDirectory build directory}
+     * @param folder name of the folder to create in {@code tmp}
+     */
+    @SuppressWarnings("try")
+    static File layOut(File master, TemporaryFolder tmp, String folder, ToolHomeMode mode) throws IOException, InterruptedException {
+        if (mode == ToolHomeMode.SHARED || mode == ToolHomeMode.LAZY) {
+            return master;
+        }
+        if (tmp == null) {
+            return layOutInBuildDirectory(master, mode);
+        }
+        try (ProvisioningEvent event = ProvisioningEvent.begin("materialize", master.getName())) {
+            File home = new File(tmp.newFolder(folder), master.getName());
+            Files.createDirectory(home.toPath());
+            if (mode == ToolHomeMode.OVERLAY) {
+                overlay(master, home, OVERLAY_PATHS);
+            } else {
+                materialize(master, home);
+            }
+            return home;
+        }
+    }
+
+    /**
+     * Lays out a home once for all tests of the project which give no {@link TemporaryFolder},
+     * in the build directory where {@code ToolInstallations} used to extract Maven, so that they may modify it as they did.
+     * It is staged and renamed into place with a {@link ToolCache#MARKER}, so that {@link #prebuilt} finds it afterwards.
+     */
+    @SuppressWarnings("try")
+    private static File layOutInBuildDirectory(File master, ToolHomeMode mode) throws IOException, InterruptedException {
+        File buildDirectory = new File(System.getProperty("buildDirectory", "target")).getAbsoluteFile();
+        File home = new File(buildDirectory, master.getName());
+        if (ToolCache.isComplete(home)) {
+            return home;
+        }
+        try (ProvisioningEvent event = ProvisioningEvent.begin("materialize", master.getName())) {
+            if (home.exists() && !ToolCache.isComplete(home)) {
+                // extracted by an earlier version of this library, whose tests may have modified it
+                ToolCache.delete(home);
+            }
+            Files.createDirectories(buildDirectory.toPath());
+            File staging = Files.createTempDirectory(buildDirectory.toPath(), master.getName() + ".tmp").toFile();
+            try {
+                if (mode == ToolHomeMode.OVERLAY) {
+                    overlay(master, staging, OVERLAY_PATHS);
+                } else {
+                    materialize(master, staging);
+                }
+                Files.write(new File(staging, ToolCache.MARKER).toPath(), (master + "\n").getBytes("UTF-8"));
+                try {
+                    Files.move(staging.toPath(), home.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException x) {
+                    // laid out meanwhile by another test JVM
+                    if (!ToolCache.isComplete(home)) {
+                        throw x;
+                    }
+                }
+            } finally {
+                ToolCache.delete(staging);
+            }
+            return home;
+        }
+    }
+
+    /**
+     * Materializes the content of a master directory, except its {@link ToolCache#MARKER}, into an empty directory.
+     */
+    static void materialize(File master, File target) throws IOException, InterruptedException {
+        FileStore store = Files.getFileStore(target.toPath());
+        if (MATERIALIZATION != Materialization.COPY && UNSUPPORTED.get(store) != MATERIALIZATION) {
+            if (MATERIALIZATION == Materialization.LINK ? link(master, target) : reflink(master, target)) {
+                if (MATERIALIZATION == Materialization.REFLINK) {
+                    ToolCache.setWritable(target, true);
+                }
+                return;
+            }
+            LOGGER.log(Level.FINE, "{0} does not support {1}", new Object[] {store, MATERIALIZATION});
+            UNSUPPORTED.put(store, MATERIALIZATION);
+            clean(target);
+        }
+        walk(master, target, Materialization.COPY);
+        ToolCache.setWritable(target, true);
+    }
+
+    /**
+     * Lays out a tool home whose mutable paths are copied from the master home, and whose other files and directories
+     * are symbolic links to it.
+     * A directory containing a mutable path, such as {@code lib} for {@code lib/ext}, is created with its other entries linked.
+     *
+     * @param master the tool home in the cache
+     * @param target an empty directory
+     * @param mutable paths relative to the tool home, with {@code /} as separator
+     */
+    static void overlay(File master, File target, List<String> mutable) throws IOException {
+        overlay(master.toPath(), target.toPath(), "", mutable);
+    }
+
+    private static void overlay(Path master, Path target, String prefix, List<String> mutable) throws IOException {
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(master)) {
+            for (Path child : children) {
+                String name = child.getFileName().toString();
+                String rel = prefix + name;
+                Path copy = target.resolve(name);
+                if (name.equals(ToolCache.MARKER)) {
+                    continue;
+                }
+                if (mutable.contains(rel)) {
+                    copy(child, copy);
+                } else if (Files.isDirectory(child) && containsMutable(rel, mutable)) {
+                    Files.createDirectory(copy);
+                    overlay(child, copy, rel + "/", mutable);
+                } else {
+                    try {
+                        Files.createSymbolicLink(copy, child.toAbsolutePath());
+                    } catch (IOException | UnsupportedOperationException x) {
+                        // e.g. Windows without the privilege to create symbolic links
+                        LOGGER.log(Level.FINE, "Cannot link " + copy + ", copying it", x);
+                        copy(child, copy);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void copy(Path from, Path to) throws IOException {
+        if (Files.isDirectory(from)) {
+            walk(from.toFile(), to.toFile(), Materialization.COPY);
+            ToolCache.setWritable(to.toFile(), true);
+        } else {
+            Files.copy(from, to, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+        to.toFile().setWritable(true);
+    }
+
+    private static boolean containsMutable(String dir, List<String> mutable) {
+        for (String path : mutable) {
+            if (path.startsWith(dir + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean link(File master, File target) {
+        try {
+            walk(master, target, Materialization.LINK);
+            return true;
+        } catch (IOException x) {
+            // typically a cross-device link
+            LOGGER.log(Level.FINE, "Cannot hard link " + master + " into " + target, x);
+            return false;
+        }
+    }
+
+    private static boolean reflink(File master, File target) throws IOException, InterruptedException {
+        String os = System.getProperty("os.name").toLowerCase(Locale.ENGLISH);
+        String source = master.getPath() + File.separator + ".";
+        List<String> cmd;
+        if (os.contains("linux")) {
+            cmd = Arrays.asList("cp", "-R", "--reflink=always", "--preserve=mode,timestamps", source, target.getPath());
+        } else if (os.contains("mac")) {
+            cmd = Arrays.asList("cp", "-R", "-c", "-p", source, target.getPath());
+        } else {
+            return false;
+        }
+        Process p;
+        try {
+            p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        } catch (IOException x) {
+            return false;
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream in = p.getInputStream()) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                output.write(buf, 0, n);
+            }
+        }
+        if (p.waitFor() != 0) {
+            LOGGER.log(Level.FINE, "{0} failed: {1}", new Object[] {cmd, output});
+            return false;
+        }
+        Files.deleteIfExists(new File(target, ToolCache.MARKER).toPath());
+        return true;
+    }
+
+    private static void walk(File master, File target, final Materialization how) throws IOException {
+        final Path from = master.toPath();
+        final Path to = target.toPath();
+        final Path marker = from.resolve(ToolCache.MARKER);
+        Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(to.resolve(from.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (file.equals(marker)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path copy = to.resolve(from.relativize(file));
+                if (how == Materialization.LINK) {
+                    Files.createLink(copy, file);
+                } else {
+                    Files.copy(file, copy, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Empties a directory after a failed attempt.
+     */
+    private static void clean(File target) throws IOException {
+        // cp may have copied the permissions of the master
+        target.setWritable(true);
+        File[] children = target.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                ToolCache.delete(child);
+            }
+        }
+    }
+
+    private ToolHomes() {
+    }
+
+}
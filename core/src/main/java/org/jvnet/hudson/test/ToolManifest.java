@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The paths of a tool home needed to run the tool, to which extraction into the {@link ToolCache} is restricted,
+ * leaving out documentation, licenses and samples.
+ * A manifest is a resource named after the tool without its version, such as {@code ToolManifest/apache-maven.txt},
+ * listing one path relative to the tool home per line; a tool without a manifest is extracted whole.
+ * Pruning may be disabled with the system property {@code org.jvnet.hudson.test.ToolInstallations.prune}.
+ */
+final class ToolManifest {
+
+    /**
+     * Whether manifests are applied, true by default.
+     */
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(ToolCache.PROPERTIES + "prune", "true"));
+
+    /** Includes everything. */
+    static final ToolManifest ALL = new ToolManifest(null);
+
+    private static final Pattern NAME = Pattern.compile("(.+?)-(\\d.*)");
+
+    /** Included paths, or null for all. */
+    private final List<String> includes;
+
+    private ToolManifest(List<String> includes) {
+        this.includes = includes;
+    }
+
+    /**
+     * Looks up the manifest of a tool.
+     *
+     * @param tool name of the tool and version, e.g. {@code apache-maven-3.5.0}
+     * @return the manifest, or {@link #ALL} if the tool has none or pruning is disabled
+     */
+    static ToolManifest forTool(String tool) throws IOException {
+        if (!ENABLED) {
+            return ALL;
+        }
+        Matcher m = NAME.matcher(tool);
+        URL manifest = ToolManifest.class.getResource("ToolManifest/" + (m.matches() ? m.group(1) : tool) + ".txt");
+        if (manifest == null) {
+            return ALL;
+        }
+        List<String> includes = new ArrayList<String>();
+        try (InputStream in = manifest.openStream();
+             BufferedReader r = new BufferedReader(new InputStreamReader(in, "UTF-8"))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    includes.add(line.replaceFirst("/+$", ""));
+                }
+            }
+        }
+        Collections.sort(includes);
+        return new ToolManifest(includes);
+    }
+
+    /**
+     * Checks whether an entry is to be extracted.
+     *
+     * @param entry name of an archive entry, starting with the directory of the tool home, e.g. {@code apache-maven-3.5.0/bin/mvn}
+     */
+    boolean includes(String entry) {
+        if (includes == null) {
+            return true;
+        }
+        int slash = entry.indexOf('/');
+        String path = slash == -1 ? "" : entry.substring(slash + 1);
+        if (path.isEmpty()) {
+            // the tool home itself
+            return true;
+        }
+        for (String include : includes) {
+            if (path.equals(include) || path.startsWith(include + "/")) {
+                return true;
+            }
+            if (path.endsWith("/") && include.startsWith(path)) {
+                // a directory leading to an included path, e.g. lib/ for lib/ext
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Distinguishes the extractions of an archive under different manifests.
+     *
+     * @return an empty string if nothing is left out
+     */
+    String key() {
+        return includes == null ? "" : "includes " + includes;
+    }
+
+}
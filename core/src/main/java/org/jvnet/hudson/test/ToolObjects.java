@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Content-addressed store of the files of extracted tools, under {@code objects} in the {@link ToolCache}.
+ * Files found in several tools, such as the many jars different Maven versions have in common, are stored once
+ * and hard linked into each tool home, which saves disk space and page cache when several tools are used at once.
+ * Files are stored by content and permissions, as links share the latter;
+ * the timestamp of a file is that of the first copy stored, which tools do not care about.
+ */
+final class ToolObjects {
+
+    private static final Logger LOGGER = Logger.getLogger(ToolObjects.class.getName());
+
+    /**
+     * Whether extracted files are deduplicated, true by default.
+     * May be disabled with the system property {@code org.jvnet.hudson.test.ToolInstallations.deduplicate}.
+     */
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(ToolCache.PROPERTIES + "deduplicate", "true"));
+
+    static final File ROOT = new File(ToolCache.ROOT, "objects");
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    /**
+     * Replaces a freshly extracted file with a link to the stored copy of the same content and permissions,
+     * or stores it if there is none yet; stored files are read-only.
+     * Should linking fail, for example on a file system without hard links, the file is left alone.
+     *
+     * @param f a file whose permissions and timestamp are already set
+     * @param digest SHA-256 of its content
+     */
+    static void share(File f, byte[] digest) throws IOException {
+        String hex = ToolCache.hex(digest);
+        Path object = new File(new File(ROOT, hex.substring(0, 2)), hex.substring(2) + "-" + permissions(f.toPath())).toPath();
+        Files.createDirectories(object.getParent());
+        try {
+            Files.createLink(object, f.toPath());
+            // shared from now on
+            object.toFile().setWritable(false, false);
+            return;
+        } catch (FileAlreadyExistsException x) {
+            // stored by an earlier extraction
+        } catch (IOException | UnsupportedOperationException x) {
+            LOGGER.log(Level.FINE, "Cannot store " + f, x);
+            return;
+        }
+        Path link = f.toPath().resolveSibling("." + hex + ".tmp");
+        try {
+            Files.createLink(link, object);
+            Files.move(link, f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException x) {
+            // e.g. too many links to the object
+            LOGGER.log(Level.FINE, "Cannot link " + f + " to " + object, x);
+            Files.deleteIfExists(link);
+        }
+    }
+
+    /**
+     * Makes an extracted file executable without changing the mode of the stored copy it may be linked to,
+     * by replacing it with an executable copy, shared in turn.
+     */
+    static void setExecutable(File f) throws IOException {
+        Path copy = f.toPath().resolveSibling("." + f.getName() + ".tmp");
+        try {
+            Files.copy(f.toPath(), copy, StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+            copy.toFile().setWritable(true);
+            copy.toFile().setExecutable(true, false);
+            Files.move(copy, f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+        if (ENABLED) {
+            MessageDigest md = ToolCache.sha256();
+            try (InputStream in = new DigestInputStream(Files.newInputStream(f.toPath()), md)) {
+                byte[] buf = new byte[8192];
+                while (in.read(buf) != -1) {
+                    // digesting
+                }
+            }
+            share(f, md.digest());
+        }
+    }
+
+    /**
+     * Permissions of a file as stored, without write permissions, e.g. {@code 555}, or {@code x} for an executable
+     * file where there are no POSIX permissions.
+     */
+    private static String permissions(Path f) throws IOException {
+        if (!POSIX) {
+            return Files.isExecutable(f) ? "x" : "";
+        }
+        int mode = 0;
+        for (PosixFilePermission p : Files.getPosixFilePermissions(f)) {
+            mode |= 0400 >> p.ordinal();
+        }
+        return Integer.toOctalString(mode & 0555);
+    }
+
+    private ToolObjects() {
+    }
+
+}
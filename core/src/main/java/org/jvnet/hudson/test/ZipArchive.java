@@ -0,0 +1,386 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Read-only view of a zip archive held in a {@link ByteBuffer}.
+ * Unlike {@link java.util.zip.ZipInputStream} it reads the central directory,
+ * so entries are known upfront and may be inflated concurrently.
+ */
+final class ZipArchive {
+
+    private static final Logger LOGGER = Logger.getLogger(ZipArchive.class.getName());
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int LOC_SIGNATURE = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    /** Host system recorded in the "version made by" field when external attributes hold a Unix mode. */
+    private static final int UNIX = 3;
+
+    private final ByteBuffer buffer;
+    private final List<Entry> entries;
+
+    ZipArchive(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.entries = Collections.unmodifiableList(readCentralDirectory());
+    }
+
+    /**
+     * Opens an archive from a URL.
+     * A local file is mapped into memory, as is a local jar containing the archive, which if stored uncompressed
+     * is then read in place; any other resource is read into the heap.
+     */
+    static ZipArchive open(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            return new ZipArchive(map(url));
+        }
+        if ("jar".equals(url.getProtocol())) {
+            JarURLConnection c = (JarURLConnection) url.openConnection();
+            if ("file".equals(c.getJarFileURL().getProtocol()) && c.getEntryName() != null) {
+                try {
+                    ZipArchive jar = new ZipArchive(map(c.getJarFileURL()));
+                    for (Entry e : jar.entries) {
+                        if (e.name.equals(c.getEntryName())) {
+                            return new ZipArchive(jar.contents(e));
+                        }
+                    }
+                } catch (IOException x) {
+                    // e.g. a Zip64 jar
+                    LOGGER.log(Level.FINE, "Cannot map " + url + ", reading it", x);
+                }
+            }
+        }
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        try (InputStream in = url.openStream()) {
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                data.write(buf, 0, n);
+            }
+        }
+        return new ZipArchive(ByteBuffer.wrap(data.toByteArray()));
+    }
+
+    private static ByteBuffer map(URL url) throws IOException {
+        File f;
+        try {
+            f = new File(url.toURI());
+        } catch (URISyntaxException x) {
+            throw new IOException(x);
+        }
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * Opens the content of an entry; safe to call concurrently from several threads.
+     */
+    InputStream open(Entry e) throws IOException {
+        InputStream raw = new BufferInputStream(data(e));
+        switch (e.method) {
+        case ZipEntry.STORED:
+            return raw;
+        case ZipEntry.DEFLATED:
+            return new EntryInflaterInputStream(raw);
+        default:
+            throw new IOException("Unsupported compression method " + e.method + " for " + e.name);
+        }
+    }
+
+    /**
+     * The content of an entry: a view of this archive if stored, else inflated into the heap.
+     */
+    ByteBuffer contents(Entry e) throws IOException {
+        if (e.method == ZipEntry.STORED) {
+            return data(e);
+        }
+        if (e.size > Integer.MAX_VALUE) {
+            throw new IOException(e.name + " is too large");
+        }
+        byte[] content = new byte[(int) e.size];
+        try (InputStream in = open(e)) {
+            int off = 0;
+            int n;
+            while (off < content.length && (n = in.read(content, off, content.length - off)) != -1) {
+                off += n;
+            }
+            if (off < content.length) {
+                throw new EOFException("Truncated " + e.name);
+            }
+        }
+        return ByteBuffer.wrap(content);
+    }
+
+    /**
+     * The data of an entry as stored in the archive, which is its content if it is {@link ZipEntry#STORED}.
+     */
+    ByteBuffer data(Entry e) throws IOException {
+        int loc = e.offset;
+        if (buffer.getInt(loc) != LOC_SIGNATURE) {
+            throw new IOException("Corrupt local header for " + e.name);
+        }
+        int start = loc + 30 + (buffer.getShort(loc + 26) & 0xffff) + (buffer.getShort(loc + 28) & 0xffff);
+        return slice(start, (int) e.compressedSize);
+    }
+
+    /**
+     * Writes an archive made of some entries of this one, copied as they are, without recompression.
+     */
+    void write(List<Entry> selected, File f) throws IOException {
+        try (FileChannel out = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            int[] offsets = new int[selected.size()];
+            for (int i = 0; i < selected.size(); i++) {
+                Entry e = selected.get(i);
+                offsets[i] = (int) out.position();
+                writeFully(out, slice(e.offset, localLength(e)));
+            }
+            int cenStart = (int) out.position();
+            for (int i = 0; i < selected.size(); i++) {
+                Entry e = selected.get(i);
+                int length = 46 + (buffer.getShort(e.cen + 28) & 0xffff) + (buffer.getShort(e.cen + 30) & 0xffff) + (buffer.getShort(e.cen + 32) & 0xffff);
+                ByteBuffer record = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+                record.put(slice(e.cen, length));
+                record.putInt(42, offsets[i]);
+                record.flip();
+                writeFully(out, record);
+            }
+            ByteBuffer eocd = ByteBuffer.allocate(EOCD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            eocd.putInt(EOCD_SIGNATURE).putShort((short) 0).putShort((short) 0)
+                    .putShort((short) selected.size()).putShort((short) selected.size())
+                    .putInt((int) out.position() - cenStart).putInt(cenStart).putShort((short) 0);
+            eocd.flip();
+            writeFully(out, eocd);
+        }
+    }
+
+    /**
+     * Length of the local header, data and data descriptor of an entry.
+     */
+    private int localLength(Entry e) {
+        int loc = e.offset;
+        int length = 30 + (buffer.getShort(loc + 26) & 0xffff) + (buffer.getShort(loc + 28) & 0xffff) + (int) e.compressedSize;
+        if ((buffer.getShort(loc + 6) & 0x08) != 0) {
+            // data descriptor, with or without its optional signature
+            length += buffer.getInt(loc + length) == 0x08074b50 ? 16 : 12;
+        }
+        return length;
+    }
+
+    private ByteBuffer slice(int position, int length) {
+        ByteBuffer b = buffer.duplicate();
+        b.limit(position + length);
+        b.position(position);
+        return b.slice();
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            out.write(b);
+        }
+    }
+
+    private List<Entry> readCentralDirectory() throws IOException {
+        int eocd = -1;
+        for (int i = buffer.limit() - EOCD_SIZE; i >= 0 && i >= buffer.limit() - EOCD_SIZE - 0xffff; i--) {
+            // the comment length tells a genuine record from its signature showing up in a comment
+            if (buffer.getInt(i) == EOCD_SIGNATURE && i + EOCD_SIZE + (buffer.getShort(i + 20) & 0xffff) == buffer.limit()) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd == -1) {
+            throw new IOException("Not a zip archive");
+        }
+        int count = buffer.getShort(eocd + 10) & 0xffff;
+        long offset = buffer.getInt(eocd + 16) & 0xffffffffL;
+        if (count == 0xffff || offset == 0xffffffffL) {
+            throw new IOException("Zip64 archives are not supported");
+        }
+        List<Entry> result = new ArrayList<Entry>(count);
+        int p = (int) offset;
+        for (int i = 0; i < count; i++) {
+            if (buffer.getInt(p) != CEN_SIGNATURE) {
+                throw new IOException("Corrupt central directory");
+            }
+            int flags = buffer.getShort(p + 8) & 0xffff;
+            int nameLength = buffer.getShort(p + 28) & 0xffff;
+            byte[] name = new byte[nameLength];
+            ByteBuffer b = buffer.duplicate();
+            b.position(p + 46);
+            b.get(name);
+            result.add(new Entry(
+                    new String(name, Charset.forName((flags & 0x800) != 0 ? "UTF-8" : "IBM437")),
+                    buffer.getShort(p + 10) & 0xffff,
+                    dosTime(buffer.getShort(p + 14) & 0xffff, buffer.getShort(p + 12) & 0xffff),
+                    buffer.getInt(p + 16) & 0xffffffffL,
+                    buffer.getInt(p + 20) & 0xffffffffL,
+                    buffer.getInt(p + 24) & 0xffffffffL,
+                    buffer.get(p + 5) == UNIX ? (buffer.getInt(p + 38) >>> 16) & 07777 : 0,
+                    buffer.getInt(p + 42),
+                    p));
+            p += 46 + nameLength + (buffer.getShort(p + 30) & 0xffff) + (buffer.getShort(p + 32) & 0xffff);
+        }
+        return result;
+    }
+
+    private static long dosTime(int date, int time) {
+        return new GregorianCalendar(((date >> 9) & 0x7f) + 1980, ((date >> 5) & 0x0f) - 1, date & 0x1f,
+                (time >> 11) & 0x1f, (time >> 5) & 0x3f, (time << 1) & 0x3e).getTimeInMillis();
+    }
+
+    /**
+     * An entry as recorded in the central directory.
+     */
+    static final class Entry {
+        final String name;
+        final int method;
+        final long time;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        /** Unix permission bits, or 0 if the archive was not created on Unix. */
+        final int mode;
+        /** Position of the local header. */
+        final int offset;
+        /** Position of the central directory record. */
+        final int cen;
+
+        Entry(String name, int method, long time, long crc, long compressedSize, long size, int mode, int offset, int cen) {
+            this.name = name;
+            this.method = method;
+            this.time = time;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.mode = mode;
+            this.offset = offset;
+            this.cen = cen;
+        }
+
+        /**
+         * The same entry, to be extracted under another name.
+         */
+        Entry renamed(String name) {
+            return new Entry(name, method, time, crc, compressedSize, size, mode, offset, cen);
+        }
+
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer b;
+
+        BufferInputStream(ByteBuffer b) {
+            this.b = b;
+        }
+
+        @Override
+        public int read() {
+            return b.hasRemaining() ? b.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) {
+            if (!b.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, b.remaining());
+            b.get(buf, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return b.remaining();
+        }
+    }
+
+    /**
+     * Inflates raw deflate data, which like in {@link java.util.zip.ZipFile} needs a dummy trailing byte.
+     */
+    private static final class EntryInflaterInputStream extends InflaterInputStream {
+        private boolean eof;
+
+        EntryInflaterInputStream(InputStream in) {
+            super(in, new Inflater(true), 8192);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("Unexpected end of deflated entry");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            inf.end();
+        }
+    }
+
+}
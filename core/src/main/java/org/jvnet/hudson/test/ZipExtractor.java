@@ -0,0 +1,230 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+
+/**
+ * Extracts a zip archive straight from its URL, without copying the archive to disk first.
+ * The directory tree is created upfront from the central directory, then files are written by a pool of threads,
+ * as creating many small files rather than inflating them dominates the time spent on a tool like Gradle.
+ * Unix permissions recorded in the archive are applied, so launcher scripts come out executable.
+ * Files are digested as they are written, and {@linkplain ToolObjects shared} with other tools having the same ones.
+ */
+final class ZipExtractor {
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    /** {@link PosixFilePermission} constants indexed by bit, from {@code 0400} down to {@code 0001}. */
+    private static final PosixFilePermission[] PERMISSIONS = PosixFilePermission.values();
+
+    /**
+     * Number of threads writing entries, by default the number of processors.
+     * May be tuned with the system property {@code org.jvnet.hudson.test.ToolInstallations.extractionParallelism}.
+     */
+    static final int PARALLELISM = Integer.getInteger(ToolCache.PROPERTIES + "extractionParallelism",
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Extracts the entries of an archive included by a manifest into a directory.
+     *
+     * @return the entries extracted
+     */
+    static List<ZipArchive.Entry> extract(URL archive, File target, ToolManifest manifest) throws IOException, InterruptedException {
+        return extract(archive, target, manifest, PARALLELISM);
+    }
+
+    static List<ZipArchive.Entry> extract(URL archive, File target, ToolManifest manifest, int parallelism) throws IOException, InterruptedException {
+        ZipArchive zip = ZipArchive.open(archive);
+        List<ZipArchive.Entry> included = new ArrayList<ZipArchive.Entry>();
+        for (ZipArchive.Entry e : zip.entries()) {
+            if (manifest.includes(e.name)) {
+                included.add(e);
+            }
+        }
+        return extract(zip, included, target, parallelism);
+    }
+
+    /**
+     * Extracts some entries of an archive under other names.
+     *
+     * @param names entry names keyed by the names to extract them as
+     * @return the entries extracted, under their new names
+     */
+    static List<ZipArchive.Entry> extract(URL archive, File target, Map<String, String> names) throws IOException, InterruptedException {
+        ZipArchive zip = ZipArchive.open(archive);
+        Map<String, ZipArchive.Entry> byName = new HashMap<String, ZipArchive.Entry>();
+        for (ZipArchive.Entry e : zip.entries()) {
+            byName.put(e.name, e);
+        }
+        List<ZipArchive.Entry> selected = new ArrayList<ZipArchive.Entry>(names.size());
+        for (Map.Entry<String, String> name : names.entrySet()) {
+            ZipArchive.Entry e = byName.get(name.getValue());
+            if (e == null) {
+                throw new IOException(name.getValue() + " not found in " + archive);
+            }
+            selected.add(e.renamed(name.getKey()));
+        }
+        return extract(zip, selected, target, PARALLELISM);
+    }
+
+    private static List<ZipArchive.Entry> extract(final ZipArchive zip, List<ZipArchive.Entry> entries, File target, int parallelism) throws IOException, InterruptedException {
+        String root = target.getCanonicalPath() + File.separator;
+        List<ZipArchive.Entry> dirs = new ArrayList<ZipArchive.Entry>();
+        List<Callable<Void>> writes = new ArrayList<Callable<Void>>();
+        for (final ZipArchive.Entry e : entries) {
+            final File f = new File(target, e.name);
+            if (!f.getCanonicalPath().startsWith(root) && !(f.getCanonicalPath() + File.separator).equals(root)) {
+                throw new IOException(e.name + " escapes " + target);
+            }
+            if (e.isDirectory()) {
+                Files.createDirectories(f.toPath());
+                dirs.add(e);
+            } else {
+                Files.createDirectories(f.getParentFile().toPath());
+                writes.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        write(zip, e, f);
+                        return null;
+                    }
+                });
+            }
+        }
+        if (parallelism <= 1 || writes.size() <= 1) {
+            for (Callable<Void> w : writes) {
+                try {
+                    w.call();
+                } catch (IOException x) {
+                    throw x;
+                } catch (Exception x) {
+                    throw new AssertionError(x);
+                }
+            }
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(parallelism, new ExtractorThreadFactory());
+            try {
+                for (Future<Void> f : pool.invokeAll(writes)) {
+                    try {
+                        f.get();
+                    } catch (ExecutionException x) {
+                        Throwable cause = x.getCause();
+                        if (cause instanceof IOException) {
+                            throw (IOException) cause;
+                        }
+                        throw new IOException(cause);
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        // directory permissions and timestamps last, as writing their children touches them
+        for (ZipArchive.Entry e : dirs) {
+            File d = new File(target, e.name);
+            chmod(d, e.mode);
+            d.setLastModified(e.time);
+        }
+        return entries;
+    }
+
+    private static void write(ZipArchive zip, ZipArchive.Entry e, File f) throws IOException {
+        MessageDigest md = ToolObjects.ENABLED ? ToolCache.sha256() : null;
+        if (e.method == ZipEntry.STORED) {
+            // straight from the mapped archive to the file, without a copy through the heap
+            ByteBuffer data = zip.data(e);
+            if (md != null) {
+                md.update(data.duplicate());
+            }
+            try (FileChannel out = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (data.hasRemaining()) {
+                    out.write(data);
+                }
+            }
+        } else {
+            try (InputStream in = md != null ? new DigestInputStream(zip.open(e), md) : zip.open(e)) {
+                Files.copy(in, f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        chmod(f, e.mode);
+        f.setLastModified(e.time);
+        if (md != null) {
+            ToolObjects.share(f, md.digest());
+        }
+    }
+
+    static void chmod(File f, int mode) throws IOException {
+        if (!POSIX || mode == 0) {
+            return;
+        }
+        Set<PosixFilePermission> perms = EnumSet.noneOf(PosixFilePermission.class);
+        for (int i = 0; i < PERMISSIONS.length; i++) {
+            if ((mode & (0400 >> i)) != 0) {
+                perms.add(PERMISSIONS[i]);
+            }
+        }
+        Files.setPosixFilePermissions(f.toPath(), perms);
+    }
+
+    static final class ExtractorThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "ToolInstallations extractor #" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+    private ZipExtractor() {
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+import static org.jvnet.hudson.test.ZipExtractorTest.mode;
+import static org.jvnet.hudson.test.ZipExtractorTest.read;
+
+public class TarExtractorTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void ustar() throws Exception {
+        extract(new TarFixture()
+                .dir("tool-1.0/", 0755)
+                .file("tool-1.0/bin/tool", "#!/bin/sh", 0755)
+                .prefixed("tool-1.0/lib", "tool.jar", "not really a jar", 0644), 1);
+    }
+
+    @Test
+    public void ustarInParallel() throws Exception {
+        extract(new TarFixture()
+                .dir("tool-1.0/", 0755)
+                .file("tool-1.0/bin/tool", "#!/bin/sh", 0755)
+                .prefixed("tool-1.0/lib", "tool.jar", "not really a jar", 0644), 4);
+    }
+
+    private void extract(TarFixture tar, int parallelism) throws Exception {
+        File target = tmp.newFolder();
+        List<ZipArchive.Entry> entries = TarExtractor.extract(tar.write(tmp.newFile("tool-1.0-bin.tar")).toURI().toURL(),
+                ArchiveCodecs.forSuffix(".tar"), target, ToolManifest.ALL, parallelism);
+        assertEquals("[tool-1.0/, tool-1.0/bin/tool, tool-1.0/lib/tool.jar]", entries.toString());
+        assertEquals(16, entries.get(2).size);
+        assertEquals("#!/bin/sh", read(new File(target, "tool-1.0/bin/tool")));
+        assertEquals("not really a jar", read(new File(target, "tool-1.0/lib/tool.jar")));
+        assertEquals(1500000000000L, new File(target, "tool-1.0/lib/tool.jar").lastModified());
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            // write permissions are dropped from files shared by ToolObjects
+            assertEquals("r-xr-xr-x", mode(new File(target, "tool-1.0/bin/tool")).replace('w', '-'));
+            assertEquals("r--r--r--", mode(new File(target, "tool-1.0/lib/tool.jar")).replace('w', '-'));
+        }
+    }
+
+    @Test
+    public void gnuLongName() throws Exception {
+        String name = "tool-1.0/lib/" + repeat('a', 120) + ".jar";
+        File target = tmp.newFolder();
+        List<ZipArchive.Entry> entries = extract(new TarFixture().gnuLongName(name, "long", 0644), target);
+        assertEquals(name, entries.get(0).name);
+        assertEquals("long", read(new File(target, name)));
+    }
+
+    @Test
+    public void pax() throws Exception {
+        String name = "tool-1.0/lib/" + repeat('b', 120) + ".jar";
+        File target = tmp.newFolder();
+        List<ZipArchive.Entry> entries = extract(new TarFixture().pax(name, "size from the pax header", 0644).file("tool-1.0/README", "read me", 0644), target);
+        assertEquals(2, entries.size());
+        assertEquals(name, entries.get(0).name);
+        assertEquals("size from the pax header", read(new File(target, name)));
+        // the pax header applies to the next entry only
+        assertEquals("read me", read(new File(target, "tool-1.0/README")));
+    }
+
+    @Test
+    public void gzip() throws Exception {
+        File tar = new TarFixture().file("tool-1.0/README", "read me", 0644).writeGzipped(tmp.newFile("tool-1.0-bin.tar.gz"));
+        File target = tmp.newFolder();
+        TarExtractor.extract(tar.toURI().toURL(), ArchiveCodecs.forSuffix(".tar.gz"), target, ToolManifest.ALL, 1);
+        assertEquals("read me", read(new File(target, "tool-1.0/README")));
+    }
+
+    @Test
+    public void links() throws Exception {
+        File target = tmp.newFolder();
+        extract(new TarFixture()
+                .file("tool-1.0/lib/tool.jar", "jar", 0644)
+                .symlink("tool-1.0/lib/tool-latest.jar", "tool.jar")
+                .hardlink("tool-1.0/lib/tool-copy.jar", "tool-1.0/lib/tool.jar"), target);
+        assertTrue(Files.isSymbolicLink(new File(target, "tool-1.0/lib/tool-latest.jar").toPath()));
+        assertEquals("jar", read(new File(target, "tool-1.0/lib/tool-latest.jar")));
+        assertEquals("jar", read(new File(target, "tool-1.0/lib/tool-copy.jar")));
+    }
+
+    @Test
+    public void symlinkEscaping() throws Exception {
+        File target = new File(tmp.newFolder(), "target");
+        assertTrue(target.mkdir());
+        try {
+            extract(new TarFixture().symlink("tool-1.0/passwd", "../../etc/passwd"), target);
+            fail();
+        } catch (IOException x) {
+            assertEquals("tool-1.0/passwd links to ../../etc/passwd outside of " + target, x.getMessage());
+        }
+        assertFalse(Files.exists(new File(target, "tool-1.0/passwd").toPath(), LinkOption.NOFOLLOW_LINKS));
+    }
+
+    @Test
+    public void absoluteSymlink() throws Exception {
+        File target = tmp.newFolder();
+        try {
+            extract(new TarFixture().symlink("tool-1.0/passwd", "/etc/passwd"), target);
+            fail();
+        } catch (IOException x) {
+            assertEquals("tool-1.0/passwd links to /etc/passwd outside of " + target, x.getMessage());
+        }
+        assertFalse(Files.exists(new File(target, "tool-1.0/passwd").toPath(), LinkOption.NOFOLLOW_LINKS));
+    }
+
+    @Test
+    public void absoluteHardlink() throws Exception {
+        File target = tmp.newFolder();
+        String secret = tmp.newFile("secret").getAbsolutePath();
+        try {
+            extract(new TarFixture().hardlink("tool-1.0/secret", secret), target);
+            fail();
+        } catch (IOException x) {
+            assertEquals("tool-1.0/secret links to " + secret + " outside of " + target, x.getMessage());
+        }
+        assertFalse(new File(target, "tool-1.0/secret").exists());
+    }
+
+    @Test
+    public void hardlinkEscaping() throws Exception {
+        File secret = tmp.newFile("secret");
+        File target = new File(tmp.newFolder(), "target");
+        assertTrue(target.mkdir());
+        try {
+            extract(new TarFixture().hardlink("tool-1.0/secret", "../../secret"), target);
+            fail();
+        } catch (IOException x) {
+            assertEquals("tool-1.0/secret links to ../../secret outside of " + target, x.getMessage());
+        }
+        assertTrue(secret.isFile());
+        assertFalse(new File(target, "tool-1.0/secret").exists());
+    }
+
+    @Test
+    public void pathEscaping() throws Exception {
+        File target = new File(tmp.newFolder(), "target");
+        assertTrue(target.mkdir());
+        try {
+            extract(new TarFixture().file("../evil", "gotcha", 0644), target);
+            fail();
+        } catch (IOException x) {
+            assertEquals("../evil escapes " + target, x.getMessage());
+        }
+        assertFalse(new File(target.getParentFile(), "evil").exists());
+    }
+
+    @Test
+    public void corruptHeader() throws Exception {
+        byte[] tar = new TarFixture().file("tool-1.0/README", "read me", 0644).toByteArray();
+        tar[0] = 'T';
+        File f = tmp.newFile("tool-1.0-bin.tar");
+        Files.write(f.toPath(), tar);
+        try {
+            TarExtractor.extract(f.toURI().toURL(), ArchiveCodecs.forSuffix(".tar"), tmp.newFolder(), ToolManifest.ALL, 1);
+            fail();
+        } catch (IOException x) {
+            assertEquals("Corrupt tar header in " + f.toURI().toURL(), x.getMessage());
+        }
+    }
+
+    private List<ZipArchive.Entry> extract(TarFixture tar, File target) throws Exception {
+        File f = File.createTempFile("tool-1.0-bin", ".tar", tmp.getRoot());
+        return TarExtractor.extract(tar.write(f).toURI().toURL(), ArchiveCodecs.forSuffix(".tar"), target, ToolManifest.ALL, 1);
+    }
+
+    private static String repeat(char c, int n) {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            s.append(c);
+        }
+        return s.toString();
+    }
+
+}
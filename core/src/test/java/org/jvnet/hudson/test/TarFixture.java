@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds small tar archives for tests, in the ustar, GNU or pax flavor.
+ */
+final class TarFixture {
+
+    private static final int BLOCK = 512;
+
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+    TarFixture dir(String name, int mode) throws IOException {
+        data.write(header(name, '5', mode, 0, "", "ustar\u000000"));
+        return this;
+    }
+
+    TarFixture file(String name, String content, int mode) throws IOException {
+        byte[] bytes = content.getBytes("UTF-8");
+        data.write(header(name, '0', mode, bytes.length, "", "ustar\u000000"));
+        data(bytes);
+        return this;
+    }
+
+    /**
+     * Adds a file whose name is split between the prefix and name fields of a ustar header.
+     */
+    TarFixture prefixed(String prefix, String name, String content, int mode) throws IOException {
+        byte[] bytes = content.getBytes("UTF-8");
+        byte[] header = header(name, '0', mode, bytes.length, "", "ustar\u000000");
+        put(header, 345, 155, prefix);
+        checksum(header);
+        data.write(header);
+        data(bytes);
+        return this;
+    }
+
+    /**
+     * Adds a file whose name comes from a preceding GNU {@code ././@LongLink} entry.
+     */
+    TarFixture gnuLongName(String name, String content, int mode) throws IOException {
+        byte[] longName = (name + "\u0000").getBytes("UTF-8");
+        data.write(header("././@LongLink", 'L', 0644, longName.length, "", "ustar  \u0000"));
+        data(longName);
+        byte[] bytes = content.getBytes("UTF-8");
+        data.write(header(name.substring(0, 99), '0', mode, bytes.length, "", "ustar  \u0000"));
+        data(bytes);
+        return this;
+    }
+
+    /**
+     * Adds a file whose name and size come from a preceding pax extended header,
+     * the ustar header carrying a truncated name and no size.
+     */
+    TarFixture pax(String name, String content, int mode) throws IOException {
+        byte[] bytes = content.getBytes("UTF-8");
+        byte[] records = (record("path=" + name) + record("size=" + bytes.length) + record("mtime=1500000000.5")).getBytes("UTF-8");
+        data.write(header("./PaxHeaders/entry", 'x', 0644, records.length, "", "ustar\u000000"));
+        data(records);
+        data.write(header(name.substring(0, Math.min(name.length(), 100)), '0', mode, 0, "", "ustar\u000000"));
+        data(bytes);
+        return this;
+    }
+
+    TarFixture symlink(String name, String target) throws IOException {
+        data.write(header(name, '2', 0777, 0, target, "ustar\u000000"));
+        return this;
+    }
+
+    TarFixture hardlink(String name, String target) throws IOException {
+        data.write(header(name, '1', 0644, 0, target, "ustar\u000000"));
+        return this;
+    }
+
+    byte[] toByteArray() {
+        byte[] archive = data.toByteArray();
+        byte[] result = new byte[archive.length + 2 * BLOCK];
+        System.arraycopy(archive, 0, result, 0, archive.length);
+        return result;
+    }
+
+    File write(File f) throws IOException {
+        Files.write(f.toPath(), toByteArray());
+        return f;
+    }
+
+    File writeGzipped(File f) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(f.toPath()))) {
+            out.write(toByteArray());
+        }
+        return f;
+    }
+
+    /**
+     * A pax record, {@code <length> <key>=<value>\n}, the length counting itself.
+     */
+    private static String record(String keyValue) throws IOException {
+        int base = keyValue.getBytes("UTF-8").length + 2;
+        int length = base + String.valueOf(base).length();
+        if (String.valueOf(length).length() > String.valueOf(base).length()) {
+            length++;
+        }
+        return length + " " + keyValue + "\n";
+    }
+
+    private static byte[] header(String name, char type, int mode, long size, String link, String magic) throws IOException {
+        byte[] header = new byte[BLOCK];
+        put(header, 0, 100, name);
+        put(header, 100, 8, octal(mode, 7));
+        put(header, 108, 8, octal(0, 7));
+        put(header, 116, 8, octal(0, 7));
+        put(header, 124, 12, octal(size, 11));
+        put(header, 136, 12, octal(1500000000, 11));
+        header[156] = (byte) type;
+        put(header, 157, 100, link);
+        put(header, 257, 8, magic);
+        checksum(header);
+        return header;
+    }
+
+    private static void checksum(byte[] header) throws IOException {
+        put(header, 148, 8, "        ");
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        put(header, 148, 8, octal(sum, 6) + "\u0000 ");
+    }
+
+    private void data(byte[] bytes) {
+        data.write(bytes, 0, bytes.length);
+        data.write(new byte[(BLOCK - bytes.length % BLOCK) % BLOCK], 0, (BLOCK - bytes.length % BLOCK) % BLOCK);
+    }
+
+    private static String octal(long value, int digits) {
+        StringBuilder s = new StringBuilder(Long.toOctalString(value));
+        while (s.length() < digits) {
+            s.insert(0, '0');
+        }
+        return s.toString();
+    }
+
+    private static void put(byte[] header, int offset, int length, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        if (bytes.length > length) {
+            throw new IOException(value + " does not fit in " + length + " bytes");
+        }
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+
+}
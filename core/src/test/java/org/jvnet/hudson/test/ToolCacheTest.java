@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+import static org.jvnet.hudson.test.ZipExtractorTest.mode;
+import static org.jvnet.hudson.test.ZipExtractorTest.read;
+
+public class ToolCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private ClassLoader loader;
+    private String tool;
+    private final AtomicInteger extractions = new AtomicInteger();
+    private final Handler counter = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            if (record.getMessage().startsWith("Extracting {0}") && record.getParameters()[0].equals(tool + "-bin.zip")) {
+                extractions.incrementAndGet();
+            }
+        }
+        @Override
+        public void flush() {
+        }
+        @Override
+        public void close() {
+        }
+    };
+
+    @Before
+    public void archive() throws Exception {
+        // content unique to the test, so that each test has its own directory in the cache
+        tool = "cached-tool-" + UUID.randomUUID();
+        File resources = tmp.newFolder("resources");
+        new ZipFixture()
+                .dir(tool + "/", 0755)
+                .file(tool + "/bin/tool", "#!/bin/sh", 0)
+                .file(tool + "/lib/tool.jar", tool, 0644)
+                .write(new File(resources, tool + "-bin.zip"));
+        loader = new URLClassLoader(new URL[] {resources.toURI().toURL()}, null);
+        Logger.getLogger(ToolCache.class.getName()).addHandler(counter);
+    }
+
+    @After
+    public void removeCounter() {
+        Logger.getLogger(ToolCache.class.getName()).removeHandler(counter);
+    }
+
+    @Test
+    public void extract() throws Exception {
+        File dir = ToolCache.extract(loader, tool + "-bin.zip", tool + "/bin/tool");
+        assertEquals(ToolCache.ROOT, dir.getParentFile());
+        assertTrue(ToolCache.isComplete(dir));
+        assertEquals(tool, read(new File(dir, tool + "/lib/tool.jar")));
+        assertTrue("launcher made executable", new File(dir, tool + "/bin/tool").canExecute());
+        assertEquals(1, extractions.get());
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            assertEquals("r-xr-xr-x", mode(new File(dir, tool)));
+            assertEquals("r--r--r--", mode(new File(dir, tool + "/lib/tool.jar")));
+        }
+        assertEquals("no staging directory left", "[]", staging(dir).toString());
+    }
+
+    @Test
+    public void completeDirectoryTrusted() throws Exception {
+        File dir = ToolCache.extract(loader, tool + "-bin.zip", tool + "/bin/tool");
+        ToolCache.setWritable(dir, true);
+        File sentinel = new File(dir, tool + "/sentinel");
+        assertTrue(sentinel.createNewFile());
+        assertEquals(dir, ToolCache.extract(loader, tool + "-bin.zip", tool + "/bin/tool"));
+        assertTrue("not looked into", sentinel.exists());
+        assertEquals(1, extractions.get());
+    }
+
+    @Test
+    public void leftoversReextracted() throws Exception {
+        File dir = ToolCache.extract(loader, tool + "-bin.zip", tool + "/bin/tool");
+        // as left by a JVM killed halfway through: a directory without marker, and a staging directory
+        ToolCache.setWritable(dir, true);
+        assertTrue(new File(dir, ToolCache.MARKER).delete());
+        assertTrue(new File(dir, tool + "/lib/tool.jar").delete());
+        assertTrue(new File(dir, tool + "/garbage").createNewFile());
+        File stale = new File(ToolCache.ROOT, dir.getName() + ".tmp123");
+        assertTrue(new File(stale, tool + "/lib").mkdirs());
+        assertEquals(dir, ToolCache.extract(loader, tool + "-bin.zip", tool + "/bin/tool"));
+        assertEquals(2, extractions.get());
+        assertTrue(ToolCache.isComplete(dir));
+        assertEquals(tool, read(new File(dir, tool + "/lib/tool.jar")));
+        assertFalse(new File(dir, tool + "/garbage").exists());
+        assertFalse(stale.exists());
+        assertEquals("[]", staging(dir).toString());
+    }
+
+    @Test
+    public void concurrentExtraction() throws Exception {
+        final int threads = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<File>> dirs = new ArrayList<Future<File>>();
+            for (int i = 0; i < threads; i++) {
+                dirs.add(pool.submit(new Callable<File>() {
+                    @Override
+                    public File call() throws Exception {
+                        start.await();
+                        return ToolCache.extract(loader, tool + "-bin.zip", tool + "/bin/tool");
+                    }
+                }));
+            }
+            start.countDown();
+            File dir = dirs.get(0).get();
+            for (Future<File> f : dirs) {
+                assertEquals(dir, f.get());
+            }
+            assertEquals(1, extractions.get());
+            assertTrue(ToolCache.isComplete(dir));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void deleteLeavesLinkedObjectsReadOnly() throws Exception {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        File object = tmp.newFile("object");
+        assertTrue(object.setWritable(false, false));
+        File dir = tmp.newFolder("tool");
+        Files.createLink(new File(dir, "lib.jar").toPath(), object.toPath());
+        ToolCache.setWritable(dir, false);
+        ToolCache.delete(dir);
+        assertFalse(dir.exists());
+        assertEquals("r--r--r--", mode(object));
+    }
+
+    private static List<String> staging(File dir) {
+        List<String> staging = new ArrayList<String>();
+        for (String name : ToolCache.ROOT.list()) {
+            if (name.startsWith(dir.getName() + ".tmp")) {
+                staging.add(name);
+            }
+        }
+        return staging;
+    }
+
+}
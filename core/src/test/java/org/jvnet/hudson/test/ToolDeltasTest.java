@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.FileSystems;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+import static org.jvnet.hudson.test.ZipExtractorTest.mode;
+import static org.jvnet.hudson.test.ZipExtractorTest.read;
+
+public class ToolDeltasTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws Exception {
+        File dir = tmp.newFolder();
+        new ZipFixture()
+                .dir("tool-2.0/", 0755)
+                .file("tool-2.0/bin/tool", "#!/bin/sh\necho 2.0", 0755)
+                .file("tool-2.0/lib/common.jar", "common", 0644)
+                .stored("tool-2.0/lib/stored.jar", "stored", 0644)
+                .file("tool-2.0/lib/mode.jar", "mode", 0644)
+                .write(new File(dir, "tool-2.0-bin.zip"));
+        new ZipFixture()
+                .dir("tool-1.0/", 0755)
+                .file("tool-1.0/bin/tool", "#!/bin/sh\necho 1.0", 0755)
+                .file("tool-1.0/lib/common.jar", "common", 0644)
+                .stored("tool-1.0/lib/stored.jar", "stored", 0644)
+                .file("tool-1.0/lib/mode.jar", "mode", 0600)
+                .file("tool-1.0/lib/old.jar", "old", 0644)
+                .write(new File(dir, "tool-1.0-bin.zip"));
+        ToolDeltas.main(new String[] {dir.getPath(), "tool-2.0", "tool-1.0"});
+        assertFalse(new File(dir, "tool-1.0-bin.zip").exists());
+        assertTrue(new File(dir, "tool-2.0-bin.zip").isFile());
+        assertEquals("base tool-2.0-bin.zip\n"
+                + "tool-1.0/lib/common.jar\ttool-2.0/lib/common.jar\n"
+                + "tool-1.0/lib/stored.jar\ttool-2.0/lib/stored.jar\n",
+                read(new File(dir, "tool-1.0-delta.list")));
+        assertEquals("[tool-1.0/, tool-1.0/bin/tool, tool-1.0/lib/mode.jar, tool-1.0/lib/old.jar]",
+                ZipArchive.open(new File(dir, "tool-1.0-delta.zip").toURI().toURL()).entries().toString());
+
+        ToolDeltas delta = ToolDeltas.find(new URLClassLoader(new URL[] {dir.toURI().toURL()}, null), "tool-1.0");
+        File target = tmp.newFolder();
+        List<ZipArchive.Entry> entries = delta.extract(target, ToolManifest.ALL);
+        assertEquals(6, entries.size());
+        assertEquals("#!/bin/sh\necho 1.0", read(new File(target, "tool-1.0/bin/tool")));
+        assertEquals("common", read(new File(target, "tool-1.0/lib/common.jar")));
+        assertEquals("stored", read(new File(target, "tool-1.0/lib/stored.jar")));
+        assertEquals("mode", read(new File(target, "tool-1.0/lib/mode.jar")));
+        assertEquals("old", read(new File(target, "tool-1.0/lib/old.jar")));
+        assertFalse(new File(target, "tool-2.0").exists());
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            // an entry differing from the base only by its mode is kept in the delta
+            assertEquals("r--------", mode(new File(target, "tool-1.0/lib/mode.jar")).replace('w', '-'));
+            assertEquals("r-xr-xr-x", mode(new File(target, "tool-1.0/bin/tool")).replace('w', '-'));
+        }
+    }
+
+    @Test
+    public void missing() throws Exception {
+        try {
+            ToolDeltas.find(new URLClassLoader(new URL[] {tmp.getRoot().toURI().toURL()}, null), "tool-1.0");
+            fail();
+        } catch (FileNotFoundException x) {
+            assertEquals("tool-1.0-bin.zip is not bundled in the test harness", x.getMessage());
+        }
+    }
+
+}
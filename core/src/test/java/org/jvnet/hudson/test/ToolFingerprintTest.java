@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import hudson.tasks.Maven;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class ToolFingerprintTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void meetsMavenReqVersion() {
+        assertTrue(ToolFingerprint.meetsMavenReqVersion("2.0.11", Maven.MavenInstallation.MAVEN_20));
+        assertTrue(ToolFingerprint.meetsMavenReqVersion("2.2.1", Maven.MavenInstallation.MAVEN_20));
+        assertFalse(ToolFingerprint.meetsMavenReqVersion("3.5.0", Maven.MavenInstallation.MAVEN_20));
+        assertFalse(ToolFingerprint.meetsMavenReqVersion("2.0.11", Maven.MavenInstallation.MAVEN_21));
+        assertTrue(ToolFingerprint.meetsMavenReqVersion("2.2.1", Maven.MavenInstallation.MAVEN_21));
+        assertFalse(ToolFingerprint.meetsMavenReqVersion("3.5.0", Maven.MavenInstallation.MAVEN_21));
+        assertFalse(ToolFingerprint.meetsMavenReqVersion("2.0.11", Maven.MavenInstallation.MAVEN_30));
+        assertFalse(ToolFingerprint.meetsMavenReqVersion("2.2.1", Maven.MavenInstallation.MAVEN_30));
+        assertTrue(ToolFingerprint.meetsMavenReqVersion("3.0.1", Maven.MavenInstallation.MAVEN_30));
+        assertTrue(ToolFingerprint.meetsMavenReqVersion("3.5.0", Maven.MavenInstallation.MAVEN_30));
+    }
+
+    @Test
+    public void mavenVersion() throws Exception {
+        File home = tmp.newFolder();
+        jar(new File(home, "lib/maven-core-3.5.0.jar"), "META-INF/maven/org.apache.maven/maven-core/pom.properties", "version=3.5.0-beta\n", null);
+        assertEquals("taken from pom.properties rather than the name", "3.5.0-beta", ToolFingerprint.mavenVersion(home));
+    }
+
+    @Test
+    public void mavenVersionFromUberJarName() throws Exception {
+        File home = tmp.newFolder();
+        jar(new File(home, "lib/maven-2.2.1-uber.jar"), "org/apache/maven/Maven.class", "", null);
+        jar(new File(home, "lib/commons-cli-1.2.jar"), "org/apache/commons/cli/Option.class", "", null);
+        assertEquals("2.2.1", ToolFingerprint.mavenVersion(home));
+    }
+
+    @Test
+    public void antVersion() throws Exception {
+        File home = tmp.newFolder();
+        jar(new File(home, "lib/ant.jar"), "org/apache/tools/ant/version.txt", "VERSION=1.8.1\nDATE=April 30 2010\n", null);
+        assertEquals("1.8.1", ToolFingerprint.antVersion(home));
+    }
+
+    @Test
+    public void antVersionFromManifest() throws Exception {
+        File home = tmp.newFolder();
+        jar(new File(home, "lib/ant.jar"), "org/apache/tools/ant/Main.class", "", "1.9.9");
+        assertEquals("1.9.9", ToolFingerprint.antVersion(home));
+    }
+
+    @Test
+    public void gradleVersion() throws Exception {
+        File home = tmp.newFolder();
+        jar(new File(home, "lib/gradle-core-2.13.jar"), "org/gradle/Main.class", "", null);
+        jar(new File(home, "lib/gradle-base-services-2.13.jar"), "org/gradle/Base.class", "", null);
+        assertEquals("2.13", ToolFingerprint.gradleVersion(home));
+    }
+
+    @Test
+    public void notAHome() throws Exception {
+        File home = tmp.newFolder();
+        assertNull(ToolFingerprint.mavenVersion(home));
+        assertNull(ToolFingerprint.antVersion(home));
+        assertNull(ToolFingerprint.gradleVersion(home));
+    }
+
+    private static void jar(File f, String entry, String content, String implementationVersion) throws Exception {
+        f.getParentFile().mkdirs();
+        Manifest mf = new Manifest();
+        mf.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (implementationVersion != null) {
+            mf.getMainAttributes().put(Attributes.Name.IMPLEMENTATION_VERSION, implementationVersion);
+        }
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(f), mf)) {
+            out.putNextEntry(new JarEntry(entry));
+            out.write(content.getBytes("UTF-8"));
+            out.closeEntry();
+        }
+    }
+
+}
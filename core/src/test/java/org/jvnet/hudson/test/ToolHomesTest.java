@@ -0,0 +1,175 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+import static org.jvnet.hudson.test.ZipExtractorTest.mode;
+import static org.jvnet.hudson.test.ZipExtractorTest.read;
+
+public class ToolHomesTest {
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File master;
+    private String buildDirectory;
+
+    @Before
+    public void master() throws Exception {
+        master = new File(tmp.newFolder("cache"), "tool-1.0");
+        new File(master, "bin").mkdirs();
+        new File(master, "conf").mkdirs();
+        new File(master, "lib/ext").mkdirs();
+        Files.write(new File(master, "bin/tool").toPath(), "#!/bin/sh".getBytes("UTF-8"));
+        Files.write(new File(master, "conf/settings.xml").toPath(), "<settings/>".getBytes("UTF-8"));
+        Files.write(new File(master, "lib/tool.jar").toPath(), "jar".getBytes("UTF-8"));
+        Files.write(new File(master, "lib/ext/plugin.jar").toPath(), "plugin".getBytes("UTF-8"));
+        Files.write(new File(master, ToolCache.MARKER).toPath(), "tool-1.0-bin.zip\n".getBytes("UTF-8"));
+        ToolCache.setWritable(master, false);
+        buildDirectory = System.getProperty("buildDirectory");
+    }
+
+    @After
+    public void restore() {
+        if (buildDirectory != null) {
+            System.setProperty("buildDirectory", buildDirectory);
+        } else {
+            System.clearProperty("buildDirectory");
+        }
+    }
+
+    @Test
+    public void shared() throws Exception {
+        assertSame(master, ToolHomes.layOut(master, tmp, "toolHome", ToolHomeMode.SHARED));
+        assertSame(master, ToolHomes.layOut(master, null, "toolHome", ToolHomeMode.SHARED));
+    }
+
+    @Test
+    public void overlay() throws Exception {
+        // relative to the working directory, as the cache is with a relative cacheDir
+        File relative = new File(new File("").getAbsoluteFile().toURI().relativize(master.toURI()).getPath());
+        File home = tmp.newFolder("overlay");
+        ToolHomes.overlay(relative, home, Arrays.asList("conf", "lib/ext"));
+        assertEquals("[bin, conf, lib]", sorted(home.list()));
+        assertEquals("[ext, tool.jar]", sorted(new File(home, "lib").list()));
+        for (String copied : new String[] {"conf", "lib", "lib/ext"}) {
+            assertFalse(copied, Files.isSymbolicLink(new File(home, copied).toPath()));
+        }
+        for (String linked : new String[] {"bin", "lib/tool.jar"}) {
+            Path link = Files.readSymbolicLink(new File(home, linked).toPath());
+            assertTrue(linked + " links to " + link, link.isAbsolute());
+            assertEquals(new File(master, linked).toPath(), link);
+        }
+        assertEquals("<settings/>", read(new File(home, "conf/settings.xml")));
+        assertEquals("plugin", read(new File(home, "lib/ext/plugin.jar")));
+        assertEquals("jar", read(new File(home, "lib/tool.jar")));
+        assertWritable(new File(home, "conf"));
+        assertWritable(new File(home, "conf/settings.xml"));
+        assertWritable(new File(home, "lib/ext/plugin.jar"));
+        Files.write(new File(home, "conf/settings.xml").toPath(), "<settings>changed</settings>".getBytes("UTF-8"));
+        assertEquals("<settings/>", read(new File(master, "conf/settings.xml")));
+    }
+
+    @Test
+    public void materialize() throws Exception {
+        File home = tmp.newFolder("private");
+        ToolHomes.materialize(master, home);
+        assertEquals("marker excluded", "[bin, conf, lib]", sorted(home.list()));
+        assertEquals("jar", read(new File(home, "lib/tool.jar")));
+        assertFalse(Files.isSymbolicLink(new File(home, "lib/tool.jar").toPath()));
+        assertWritable(new File(home, "lib"));
+        assertWritable(new File(home, "lib/tool.jar"));
+        Files.write(new File(home, "lib/tool.jar").toPath(), "changed".getBytes("UTF-8"));
+        assertEquals("jar", read(new File(master, "lib/tool.jar")));
+    }
+
+    @Test
+    public void layOut() throws Exception {
+        File home = ToolHomes.layOut(master, tmp, "toolHome", ToolHomeMode.PRIVATE);
+        assertEquals(new File(new File(tmp.getRoot(), "toolHome"), "tool-1.0"), home);
+        assertEquals("<settings/>", read(new File(home, "conf/settings.xml")));
+        File overlay = ToolHomes.layOut(master, tmp, "overlayHome", ToolHomeMode.OVERLAY);
+        assertTrue(Files.isSymbolicLink(new File(overlay, "bin").toPath()));
+        assertFalse(Files.isSymbolicLink(new File(overlay, "conf").toPath()));
+        assertFalse(new File(overlay, ToolCache.MARKER).exists());
+    }
+
+    @Test
+    public void buildDirectory() throws Exception {
+        File target = tmp.newFolder("target");
+        System.setProperty("buildDirectory", target.getPath());
+        File home = ToolHomes.layOut(master, null, "toolHome", ToolHomeMode.PRIVATE);
+        assertEquals(new File(target, "tool-1.0").getAbsoluteFile(), home);
+        assertTrue(ToolCache.isComplete(home));
+        assertEquals("<settings/>", read(new File(home, "conf/settings.xml")));
+        assertWritable(new File(home, "conf/settings.xml"));
+        Files.write(new File(home, "conf/settings.xml").toPath(), "<settings>changed</settings>".getBytes("UTF-8"));
+        assertEquals("<settings/>", read(new File(master, "conf/settings.xml")));
+        // later tests of the project get the same home, as they did when Maven was extracted there
+        assertEquals(home, ToolHomes.layOut(master, null, "toolHome", ToolHomeMode.PRIVATE));
+        assertEquals("<settings>changed</settings>", read(new File(home, "conf/settings.xml")));
+        assertEquals(home, ToolHomes.prebuilt("tool-1.0").getAbsoluteFile());
+        assertEquals("[tool-1.0]", Arrays.toString(target.list()));
+    }
+
+    @Test
+    public void buildDirectoryLeftovers() throws Exception {
+        File target = tmp.newFolder("target");
+        System.setProperty("buildDirectory", target.getPath());
+        // as extracted by earlier versions, without a marker
+        File old = new File(target, "tool-1.0/conf");
+        assertTrue(old.mkdirs());
+        Files.write(new File(old, "settings.xml").toPath(), "<settings>old</settings>".getBytes("UTF-8"));
+        File home = ToolHomes.layOut(master, null, "toolHome", ToolHomeMode.PRIVATE);
+        assertTrue(ToolCache.isComplete(home));
+        assertEquals("<settings/>", read(new File(home, "conf/settings.xml")));
+    }
+
+    private static String sorted(String[] names) {
+        Arrays.sort(names);
+        return Arrays.toString(names);
+    }
+
+    private static void assertWritable(File f) throws Exception {
+        if (POSIX) {
+            assertEquals(f + " is writable", 'w', mode(f).charAt(1));
+        } else {
+            assertTrue(f + " is writable", f.canWrite());
+        }
+    }
+
+}
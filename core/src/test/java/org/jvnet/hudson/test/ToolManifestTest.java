@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class ToolManifestTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void includes() throws Exception {
+        ToolManifest manifest = ToolManifest.forTool("sample-tool-1.0");
+        assertTrue(manifest.includes("sample-tool-1.0/"));
+        assertTrue(manifest.includes("sample-tool-1.0/bin/"));
+        assertTrue(manifest.includes("sample-tool-1.0/bin/tool"));
+        assertTrue("leads to lib/ext", manifest.includes("sample-tool-1.0/lib/"));
+        assertTrue(manifest.includes("sample-tool-1.0/lib/ext/"));
+        assertTrue(manifest.includes("sample-tool-1.0/lib/ext/plugin.jar"));
+        assertFalse(manifest.includes("sample-tool-1.0/lib/tool.jar"));
+        assertTrue(manifest.includes("sample-tool-1.0/conf/"));
+        assertTrue(manifest.includes("sample-tool-1.0/conf/settings.xml"));
+        assertFalse(manifest.includes("sample-tool-1.0/conf/logging.properties"));
+        assertFalse(manifest.includes("sample-tool-1.0/docs/index.html"));
+        assertFalse("not a prefix of a path segment", manifest.includes("sample-tool-1.0/binaries/tool"));
+        assertFalse(manifest.includes("sample-tool-1.0/README"));
+    }
+
+    @Test
+    public void key() throws Exception {
+        assertEquals("includes [bin, conf/settings.xml, lib/ext]", ToolManifest.forTool("sample-tool-1.0").key());
+        assertEquals(ToolManifest.forTool("sample-tool-1.0").key(), ToolManifest.forTool("sample-tool-2.0").key());
+        assertEquals("", ToolManifest.ALL.key());
+    }
+
+    @Test
+    public void noManifest() throws Exception {
+        assertSame(ToolManifest.ALL, ToolManifest.forTool("other-tool-1.0"));
+        assertTrue(ToolManifest.ALL.includes("other-tool-1.0/docs/index.html"));
+    }
+
+    @Test
+    public void prunedExtraction() throws Exception {
+        File zip = new ZipFixture()
+                .file("sample-tool-1.0/bin/tool", "#!/bin/sh", 0755)
+                .file("sample-tool-1.0/lib/tool.jar", "jar", 0644)
+                .file("sample-tool-1.0/lib/ext/plugin.jar", "plugin", 0644)
+                .file("sample-tool-1.0/docs/index.html", "docs", 0644)
+                .write(tmp.newFile("sample-tool-1.0-bin.zip"));
+        File target = tmp.newFolder();
+        ZipExtractor.extract(zip.toURI().toURL(), target, ToolManifest.forTool("sample-tool-1.0"), 1);
+        assertTrue(new File(target, "sample-tool-1.0/bin/tool").isFile());
+        assertTrue(new File(target, "sample-tool-1.0/lib/ext/plugin.jar").isFile());
+        assertFalse(new File(target, "sample-tool-1.0/lib/tool.jar").exists());
+        assertFalse(new File(target, "sample-tool-1.0/docs").exists());
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+import static org.jvnet.hudson.test.ZipExtractorTest.mode;
+import static org.jvnet.hudson.test.ZipExtractorTest.read;
+
+public class ToolObjectsTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Before
+    public void posix() {
+        assumeTrue(ToolObjects.ENABLED && FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+    }
+
+    @Test
+    public void sharedByContentAndPermissions() throws Exception {
+        // unique content, so that objects stored by other tests do not get in the way
+        String content = UUID.randomUUID().toString();
+        File a = file("a", content, "rw-r--r--");
+        File b = file("b", content, "rw-r--r--");
+        File c = file("c", content, "rw-------");
+        File d = file("d", content, "rwxr-xr-x");
+        for (File f : new File[] {a, b, c, d}) {
+            ToolObjects.share(f, ToolCache.sha256().digest(content.getBytes("UTF-8")));
+        }
+        assertEquals(Files.getAttribute(a.toPath(), "unix:ino"), Files.getAttribute(b.toPath(), "unix:ino"));
+        assertNotEquals(Files.getAttribute(a.toPath(), "unix:ino"), Files.getAttribute(c.toPath(), "unix:ino"));
+        assertNotEquals(Files.getAttribute(a.toPath(), "unix:ino"), Files.getAttribute(d.toPath(), "unix:ino"));
+        assertEquals("r--r--r--", mode(b));
+        assertEquals("r--------", mode(c));
+        assertEquals("r-xr-xr-x", mode(d));
+    }
+
+    @Test
+    public void setExecutableLeavesObjectAlone() throws Exception {
+        String content = UUID.randomUUID().toString();
+        File lib = file("lib", content, "rw-r--r--");
+        File launcher = file("launcher", content, "rw-r--r--");
+        ToolObjects.share(lib, ToolCache.sha256().digest(content.getBytes("UTF-8")));
+        ToolObjects.share(launcher, ToolCache.sha256().digest(content.getBytes("UTF-8")));
+        ToolObjects.setExecutable(launcher);
+        assertEquals("r--r--r--", mode(lib));
+        assertEquals("r-xr-xr-x", mode(launcher).replace('w', '-'));
+        assertEquals(content, read(launcher));
+        assertNotEquals(Files.getAttribute(lib.toPath(), "unix:ino"), Files.getAttribute(launcher.toPath(), "unix:ino"));
+    }
+
+    private File file(String name, String content, String mode) throws Exception {
+        File f = new File(tmp.newFolder(), name);
+        Files.write(f.toPath(), content.getBytes("UTF-8"));
+        Files.setPosixFilePermissions(f.toPath(), PosixFilePermissions.fromString(mode));
+        return f;
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class ZipArchiveTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void centralDirectory() throws Exception {
+        ZipArchive zip = new ZipArchive(ByteBuffer.wrap(new ZipFixture()
+                .dir("tool-1.0/", 0)
+                .file("tool-1.0/README", "read me", 0)
+                .stored("tool-1.0/lib/tool.jar", "not really a jar", 0)
+                .toByteArray()));
+        List<ZipArchive.Entry> entries = zip.entries();
+        assertEquals("[tool-1.0/, tool-1.0/README, tool-1.0/lib/tool.jar]", entries.toString());
+        assertTrue(entries.get(0).isDirectory());
+        assertFalse(entries.get(1).isDirectory());
+        assertEquals(ZipEntry.DEFLATED, entries.get(1).method);
+        assertEquals(7, entries.get(1).size);
+        assertEquals(ZipEntry.STORED, entries.get(2).method);
+        assertEquals(16, entries.get(2).size);
+        assertEquals(16, entries.get(2).compressedSize);
+        assertEquals("read me", read(zip, entries.get(1)));
+        assertEquals("not really a jar", read(zip, entries.get(2)));
+        assertEquals("not really a jar", new String(bytes(zip.data(entries.get(2))), "UTF-8"));
+    }
+
+    @Test
+    public void endOfCentralDirectoryBehindComment() throws Exception {
+        char[] comment = new char[1000];
+        // a comment which looks like an end of central directory record should not fool the lookup
+        Arrays.fill(comment, 'x');
+        ZipArchive zip = new ZipArchive(ByteBuffer.wrap(new ZipFixture()
+                .file("tool-1.0/README", "read me", 0)
+                .comment("PK\u0005\u0006" + new String(comment))
+                .toByteArray()));
+        assertEquals("[tool-1.0/README]", zip.entries().toString());
+        assertEquals("read me", read(zip, zip.entries().get(0)));
+    }
+
+    @Test
+    public void unixModes() throws Exception {
+        ZipArchive zip = new ZipArchive(ByteBuffer.wrap(new ZipFixture()
+                .dir("tool-1.0/bin/", 0755)
+                .file("tool-1.0/bin/tool", "#!/bin/sh", 0755)
+                .file("tool-1.0/conf", "x=1", 0640)
+                .file("tool-1.0/README", "read me", 0)
+                .toByteArray()));
+        List<ZipArchive.Entry> entries = zip.entries();
+        assertEquals(0755, entries.get(0).mode);
+        assertEquals(0755, entries.get(1).mode);
+        assertEquals(0640, entries.get(2).mode);
+        assertEquals("no mode without a Unix host", 0, entries.get(3).mode);
+    }
+
+    @Test
+    public void notAZip() throws Exception {
+        try {
+            new ZipArchive(ByteBuffer.wrap(new byte[100]));
+            fail();
+        } catch (IOException x) {
+            assertEquals("Not a zip archive", x.getMessage());
+        }
+    }
+
+    @Test
+    public void open() throws Exception {
+        File f = new ZipFixture().file("tool-1.0/README", "read me", 0).write(tmp.newFile("tool-1.0-bin.zip"));
+        ZipArchive zip = ZipArchive.open(f.toURI().toURL());
+        assertEquals("read me", read(zip, zip.entries().get(0)));
+    }
+
+    @Test
+    public void writeSelected() throws Exception {
+        ZipArchive zip = new ZipArchive(ByteBuffer.wrap(new ZipFixture()
+                .file("tool-1.0/README", "read me", 0644)
+                .stored("tool-1.0/lib/a.jar", "a", 0)
+                .file("tool-1.0/lib/b.jar", "b", 0)
+                .toByteArray()));
+        File f = tmp.newFile("selected.zip");
+        zip.write(Arrays.asList(zip.entries().get(0), zip.entries().get(2)), f);
+        ZipArchive selected = ZipArchive.open(f.toURI().toURL());
+        assertEquals("[tool-1.0/README, tool-1.0/lib/b.jar]", selected.entries().toString());
+        assertEquals(0644, selected.entries().get(0).mode);
+        assertEquals("read me", read(selected, selected.entries().get(0)));
+        assertEquals("b", read(selected, selected.entries().get(1)));
+    }
+
+    static String read(ZipArchive zip, ZipArchive.Entry e) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try (InputStream in = zip.open(e)) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                data.write(buf, 0, n);
+            }
+        }
+        return data.toString("UTF-8");
+    }
+
+    private static byte[] bytes(ByteBuffer b) {
+        byte[] data = new byte[b.remaining()];
+        b.duplicate().get(data);
+        return data;
+    }
+
+}
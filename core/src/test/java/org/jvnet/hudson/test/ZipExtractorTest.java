@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+public class ZipExtractorTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void extract() throws Exception {
+        extract(1);
+    }
+
+    @Test
+    public void extractInParallel() throws Exception {
+        extract(4);
+    }
+
+    private void extract(int parallelism) throws Exception {
+        File zip = new ZipFixture()
+                .dir("tool-1.0/", 0755)
+                .dir("tool-1.0/bin/", 0755)
+                .file("tool-1.0/bin/tool", "#!/bin/sh", 0755)
+                .stored("tool-1.0/lib/tool.jar", "not really a jar", 0644)
+                .file("tool-1.0/README", "read me", 0)
+                .write(tmp.newFile("tool-1.0-bin.zip"));
+        File target = tmp.newFolder();
+        assertEquals(5, ZipExtractor.extract(zip.toURI().toURL(), target, ToolManifest.ALL, parallelism).size());
+        assertEquals("#!/bin/sh", read(new File(target, "tool-1.0/bin/tool")));
+        assertEquals("not really a jar", read(new File(target, "tool-1.0/lib/tool.jar")));
+        assertEquals("read me", read(new File(target, "tool-1.0/README")));
+        assertEquals(1500000000000L, new File(target, "tool-1.0/README").lastModified());
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            // write permissions are dropped from files shared by ToolObjects
+            assertEquals("r-xr-xr-x", mode(new File(target, "tool-1.0/bin/tool")).replace('w', '-'));
+            assertEquals("r--r--r--", mode(new File(target, "tool-1.0/lib/tool.jar")).replace('w', '-'));
+        }
+    }
+
+    @Test
+    public void extractRenamed() throws Exception {
+        File zip = new ZipFixture()
+                .file("tool-1.0/lib/tool.jar", "jar", 0)
+                .write(tmp.newFile("tool-1.0-bin.zip"));
+        File target = tmp.newFolder();
+        ZipExtractor.extract(zip.toURI().toURL(), target, Collections.singletonMap("tool-1.1/lib/tool.jar", "tool-1.0/lib/tool.jar"));
+        assertEquals("jar", read(new File(target, "tool-1.1/lib/tool.jar")));
+        assertFalse(new File(target, "tool-1.0").exists());
+    }
+
+    @Test
+    public void zipSlip() throws Exception {
+        File zip = new ZipFixture()
+                .file("tool-1.0/README", "read me", 0)
+                .file("tool-1.0/../../evil", "gotcha", 0)
+                .write(tmp.newFile("tool-1.0-bin.zip"));
+        File target = new File(tmp.newFolder(), "target");
+        assertTrue(target.mkdir());
+        try {
+            ZipExtractor.extract(zip.toURI().toURL(), target, ToolManifest.ALL, 1);
+            fail();
+        } catch (IOException x) {
+            assertEquals("tool-1.0/../../evil escapes " + target, x.getMessage());
+        }
+        assertFalse(new File(target.getParentFile(), "evil").exists());
+    }
+
+    @Test
+    public void zipSlipAbsolute() throws Exception {
+        assumeTrue(File.separatorChar == '/');
+        File outside = new File(tmp.getRoot(), "evil");
+        File zip = new ZipFixture()
+                .file(outside.getAbsolutePath(), "gotcha", 0)
+                .write(tmp.newFile("tool-1.0-bin.zip"));
+        File target = tmp.newFolder();
+        // resolved against the target like any other name
+        ZipExtractor.extract(zip.toURI().toURL(), target, ToolManifest.ALL, 1);
+        assertFalse(outside.exists());
+        assertEquals("gotcha", read(new File(target, outside.getAbsolutePath())));
+    }
+
+    static String read(File f) throws IOException {
+        return new String(Files.readAllBytes(f.toPath()), "UTF-8");
+    }
+
+    static String mode(File f) throws IOException {
+        return PosixFilePermissions.toString(Files.getPosixFilePermissions(f.toPath()));
+    }
+
+}
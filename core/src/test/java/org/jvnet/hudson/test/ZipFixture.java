@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Builds small zip archives for tests, recording Unix modes in the external attributes as Info-ZIP does,
+ * which {@link ZipOutputStream} cannot do by itself.
+ */
+final class ZipFixture {
+
+    private final List<ZipEntry> entries = new ArrayList<ZipEntry>();
+    private final List<byte[]> contents = new ArrayList<byte[]>();
+    private final List<Integer> modes = new ArrayList<Integer>();
+    private String comment;
+
+    ZipFixture dir(String name, int mode) {
+        return add(new ZipEntry(name), new byte[0], mode == 0 ? 0 : 040000 | mode);
+    }
+
+    /**
+     * Adds a deflated file.
+     *
+     * @param mode Unix permission bits, or 0 to record none
+     */
+    ZipFixture file(String name, String content, int mode) throws IOException {
+        return add(new ZipEntry(name), content.getBytes("UTF-8"), mode == 0 ? 0 : 0100000 | mode);
+    }
+
+    /**
+     * Adds a file stored uncompressed.
+     */
+    ZipFixture stored(String name, String content, int mode) throws IOException {
+        byte[] data = content.getBytes("UTF-8");
+        ZipEntry e = new ZipEntry(name);
+        e.setMethod(ZipEntry.STORED);
+        e.setSize(data.length);
+        e.setCompressedSize(data.length);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        e.setCrc(crc.getValue());
+        return add(e, data, mode == 0 ? 0 : 0100000 | mode);
+    }
+
+    ZipFixture comment(String comment) {
+        this.comment = comment;
+        return this;
+    }
+
+    private ZipFixture add(ZipEntry e, byte[] data, int mode) {
+        e.setTime(1500000000000L);
+        entries.add(e);
+        contents.add(data);
+        modes.add(mode);
+        return this;
+    }
+
+    byte[] toByteArray() throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(data)) {
+            if (comment != null) {
+                out.setComment(comment);
+            }
+            for (int i = 0; i < entries.size(); i++) {
+                out.putNextEntry(entries.get(i));
+                out.write(contents.get(i));
+                out.closeEntry();
+            }
+        }
+        ByteBuffer zip = ByteBuffer.wrap(data.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        int eocd = zip.limit() - 22 - (comment != null ? comment.getBytes("UTF-8").length : 0);
+        int p = zip.getInt(eocd + 16);
+        for (int mode : modes) {
+            if (mode != 0) {
+                // "version made by" on Unix, then the file type and mode in the high half of the external attributes
+                zip.put(p + 5, (byte) 3);
+                zip.putInt(p + 38, mode << 16);
+            }
+            p += 46 + (zip.getShort(p + 28) & 0xffff) + (zip.getShort(p + 30) & 0xffff) + (zip.getShort(p + 32) & 0xffff);
+        }
+        return zip.array();
+    }
+
+    File write(File f) throws IOException {
+        Files.write(f.toPath(), toByteArray());
+        return f;
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import hudson.plugins.gradle.Gradle;
+import hudson.plugins.gradle.GradleInstallation;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Installs Gradle in the Jenkins under test.
+ * Unlike {@code ToolInstallations}, it only links against Gradle plugin classes.
+ */
+public class GradleInstallations {
+
+    private static final Logger LOGGER = Logger.getLogger(GradleInstallations.class.getName());
+
+    /**
+     * Extracts Gradle and configures it.
+     */
+    public static GradleInstallation configureDefaultGradle(TemporaryFolder tmp) throws Exception {
+        return configureDefaultGradle(tmp, ToolHomeMode.getDefault());
+    }
+
+    /**
+     * Extracts Gradle and configures it.
+     *
+     * @param mode whether the bundled Gradle is materialized in {@code tmp} or shared with other tests
+     */
+    @SuppressWarnings("try")
+    public static GradleInstallation configureDefaultGradle(TemporaryFolder tmp, ToolHomeMode mode) throws Exception {
+        GradleInstallation installation = installation(home(tmp, mode));
+        try (ProvisioningEvent event = ProvisioningEvent.begin("register", "gradle-2.13")) {
+            Jenkins.getInstance().getDescriptorByType(Gradle.DescriptorImpl.class).setInstallations(installation);
+        }
+        return installation;
+    }
+
+    /**
+     * Locates Gradle without touching Jenkins, materializing the bundled one if needed.
+     *
+     * @return the Gradle home, or null if the bundled one is to be installed {@linkplain ToolHomeMode#LAZY lazily}
+     * @see #configureDefaultGradle(TemporaryFolder, ToolHomeMode)
+     */
+    static File home(TemporaryFolder tmp, ToolHomeMode mode) throws Exception {
+        String home = System.getenv("GRADLE_HOME");
+        if (home != null) {
+            if (ToolFingerprint.gradleVersion(new File(home)) != null) {
+                return new File(home);
+            }
+            LOGGER.log(Level.WARNING, "GRADLE_HOME={0} does not look like a Gradle installation, ignoring it", home);
+        }
+        LOGGER.fine("Using Gradle bundled in the test harness. "
+                + "To avoid a performance hit, set the environment variable GRADLE_HOME to point to a Gradle installation.");
+        File master = ToolHomes.prebuilt("gradle-2.13");
+        if (master == null) {
+            if (mode == ToolHomeMode.LAZY) {
+                return null;
+            }
+            master = ToolHomes.cached("gradle-2.13", "bin/gradle");
+        }
+        return ToolHomes.layOut(master, tmp, "gradleHome", mode);
+    }
+
+    static GradleInstallation installation(File home) throws IOException {
+        return new GradleInstallation("default", BundledToolInstaller.path(home), BundledToolInstaller.properties(home, "gradle-2.13", "bin/gradle"));
+    }
+
+    private GradleInstallations() {
+    }
+
+}
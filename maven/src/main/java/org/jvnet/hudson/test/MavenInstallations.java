@@ -0,0 +1,177 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.hudson.test;
+
+import hudson.Launcher;
+import hudson.tasks.Maven;
+import hudson.util.StreamTaskListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Installs Maven in the Jenkins under test.
+ * Unlike {@code ToolInstallations}, it only links against Maven classes, so a test using it alone
+ * loads neither Ant nor Gradle classes.
+ */
+public class MavenInstallations {
+
+    private static final Logger LOGGER = Logger.getLogger(MavenInstallations.class.getName());
+
+    private static final ConcurrentMap<String, Boolean> MAVEN_REQ_VERSION_PROBES = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * Returns the older default Maven, while still allowing specification of
+     * other bundled Mavens.
+     */
+    public static Maven.MavenInstallation configureDefaultMaven() throws Exception {
+        return configureDefaultMaven("apache-maven-2.2.1", Maven.MavenInstallation.MAVEN_20);
+    }
+
+    public static Maven.MavenInstallation configureMaven3() throws Exception {
+        return configure("apache-maven-3.0.1", "apache-maven-3.0.1", Maven.MavenInstallation.MAVEN_30, null, ToolHomeMode.getDefault());
+    }
+
+    /**
+     * Declare "Maven 3.5.0" as the "default" Maven installation in Jenkins and as the Maven installation named "apache-maven-3.5.0".
+     * Note that both {@link hudson.tasks.Maven.MavenInstallation} share the same Maven binaries.
+     *
+     * @return the "apache-maven-3.5.0" Maven {@link hudson.tasks.Maven.MavenInstallation}
+     * @throws Exception
+     */
+    public static Maven.MavenInstallation configureMaven35() throws Exception {
+        return configure("apache-maven-3.5.0", "apache-maven-3.5.0", Maven.MavenInstallation.MAVEN_30, null, ToolHomeMode.getDefault());
+    }
+
+    /**
+     * Locates Maven and configure that as the only Maven in the system.
+     * The bundled Maven is laid out according to {@link ToolHomeMode#getDefault}; unless shared, it is laid out
+     * once in the build directory for all tests of the project, which may modify it.
+     *
+     * @param mavenVersion desired maven version (e.g. {@code apache-maven-3.5.0})
+     * @param mavenReqVersion minimum maven version defined using the constants {@link Maven.MavenInstallation#MAVEN_20},
+     *    {@link Maven.MavenInstallation#MAVEN_21} and {@link Maven.MavenInstallation#MAVEN_30}
+     */
+    public static Maven.MavenInstallation configureDefaultMaven(String mavenVersion, int mavenReqVersion) throws Exception {
+        return configureDefaultMaven(mavenVersion, mavenReqVersion, null, ToolHomeMode.getDefault());
+    }
+
+    /**
+     * Locates Maven and configure that as the only Maven in the system.
+     * Unlike {@link #configureDefaultMaven(String, int)}, the bundled Maven may be laid out for this test only,
+     * for example so that it may modify {@code conf/settings.xml}.
+     *
+     * @param mavenVersion desired maven version (e.g. {@code apache-maven-3.5.0})
+     * @param mavenReqVersion minimum maven version defined using the constants {@link Maven.MavenInstallation#MAVEN_20},
+     *    {@link Maven.MavenInstallation#MAVEN_21} and {@link Maven.MavenInstallation#MAVEN_30}
+     * @param tmp where the bundled Maven is laid out, unless {@code mode} is {@link ToolHomeMode#SHARED} or {@link ToolHomeMode#LAZY};
+     *     if null, it is laid out in the build directory as by {@link #configureDefaultMaven(String, int)}
+     * @param mode how the bundled Maven is laid out; a Maven found in {@code maven.home} is always shared
+     */
+    public static Maven.MavenInstallation configureDefaultMaven(String mavenVersion, int mavenReqVersion, TemporaryFolder tmp, ToolHomeMode mode) throws Exception {
+        return configure("default", mavenVersion, mavenReqVersion, tmp, mode);
+    }
+
+    @SuppressWarnings("try")
+    private static Maven.MavenInstallation configure(String name, String mavenVersion, int mavenReqVersion, TemporaryFolder tmp, ToolHomeMode mode) throws Exception {
+        Maven.MavenInstallation mavenInstallation = installation(name, mavenVersion, home(mavenVersion, mavenReqVersion, tmp, mode));
+        try (ProvisioningEvent event = ProvisioningEvent.begin("register", mavenVersion)) {
+            Jenkins.getInstance().getDescriptorByType(Maven.DescriptorImpl.class).setInstallations(mavenInstallation);
+        }
+        return mavenInstallation;
+    }
+
+    /**
+     * Locates Maven without touching Jenkins, extracting the bundled copy if needed.
+     *
+     * @return the Maven home, or null if the bundled copy is to be installed {@linkplain ToolHomeMode#LAZY lazily}
+     * @see #configureDefaultMaven(String, int, TemporaryFolder, ToolHomeMode)
+     */
+    static File home(String mavenVersion, int mavenReqVersion, TemporaryFolder tmp, ToolHomeMode mode) throws Exception {
+        // first if we are running inside Maven, pick that Maven, if it meets the criteria we require..
+        File mvnHome = ToolHomes.prebuilt(mavenVersion);
+        if (mvnHome != null) {
+            return ToolHomes.layOut(mvnHome, tmp, mavenVersion, mode);
+        }
+
+        // Does maven.home point to a Maven installation which satisfies mavenReqVersion?
+        String home = System.getProperty("maven.home");
+        if (home != null && meetsMavenReqVersion(new File(home), mavenReqVersion)) {
+            return new File(home);
+        }
+
+        // otherwise extract the copy we have into the machine-wide cache.
+        // this happens when a test is invoked from an IDE, for example.
+        if (mode == ToolHomeMode.LAZY) {
+            return null;
+        }
+        mvnHome = ToolHomes.layOut(ToolHomes.cached(mavenVersion, "bin/mvn"), tmp, mavenVersion, mode);
+        LOGGER.log(Level.FINE, "Using a copy of Maven bundled in the test harness from {0}. "
+                + "To avoid extracting it, set the system property ''maven.home'' to point to a Maven2 installation.", mvnHome);
+        return mvnHome;
+    }
+
+    static Maven.MavenInstallation installation(String name, String mavenVersion, File home) throws IOException {
+        return new Maven.MavenInstallation(name, BundledToolInstaller.path(home), BundledToolInstaller.properties(home, mavenVersion, "bin/mvn"));
+    }
+
+    /**
+     * Checks the version of a Maven home from its files, see {@link ToolFingerprint#mavenVersion}.
+     * Should that fail, falls back to a memoized {@link Maven.MavenInstallation#meetsMavenReqVersion}, which forks Maven.
+     * Results of the latter are kept in this JVM and in the {@link ToolCache}, keyed by the home, the timestamp of its
+     * {@code lib} directory and the required version, so that only the first test on the machine pays for the fork.
+     */
+    @SuppressWarnings("try")
+    private static boolean meetsMavenReqVersion(File home, int mavenReqVersion) throws Exception {
+        try (ProvisioningEvent event = ProvisioningEvent.begin("probe", home.getName())) {
+            String version = ToolFingerprint.mavenVersion(home);
+            if (version != null) {
+                return ToolFingerprint.meetsMavenReqVersion(version, mavenReqVersion);
+            }
+            String key = home.getCanonicalPath() + '\n' + new File(home, "lib").lastModified() + '\n' + mavenReqVersion;
+            Boolean result = MAVEN_REQ_VERSION_PROBES.get(key);
+            if (result == null) {
+                String recalled = ToolCache.recall("maven-probes", key);
+                if (recalled != null) {
+                    result = Boolean.valueOf(recalled);
+                } else {
+                    Maven.MavenInstallation mavenInstallation = new Maven.MavenInstallation("default", home.getPath(), JenkinsRule.NO_PROPERTIES);
+                    result = mavenInstallation.meetsMavenReqVersion(new Launcher.LocalLauncher(StreamTaskListener.fromStdout()), mavenReqVersion);
+                    ToolCache.remember("maven-probes", key, result.toString());
+                }
+                MAVEN_REQ_VERSION_PROBES.put(key, result);
+            }
+            return result;
+        }
+    }
+
+    private MavenInstallations() {
+    }
+
+}